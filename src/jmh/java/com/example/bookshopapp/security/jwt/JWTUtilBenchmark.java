@@ -0,0 +1,55 @@
+package com.example.bookshopapp.security.jwt;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.repositories.JWTBlackListRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookshopapp.utils.BenchmarkFixtures.stub;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверка JWT токена при каждом запросе авторизованного пользователя.
+ * validateToken разбирает и проверяет подпись токена дважды (имя пользователя и срок действия),
+ * проверка черного списка заменена заглушкой.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JWTUtilBenchmark {
+    private static final String SECRET = "apple";
+    private static final String CONTACT = "test@mail.ru";
+
+    private JWTUtil jwtUtil;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        BookShopConfig config = new BookShopConfig();
+        config.setAuthSecret(SECRET);
+        JWTBlackListRepository jwtBlackListRepository = stub(JWTBlackListRepository.class);
+        when(jwtBlackListRepository.existsByToken(anyString())).thenReturn(false);
+        jwtUtil = new JWTUtil(config, jwtBlackListRepository);
+        userDetails = new User(CONTACT, "", Collections.emptyList());
+        token = jwtUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token, userDetails);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtUtil.extractUsername(token);
+    }
+}
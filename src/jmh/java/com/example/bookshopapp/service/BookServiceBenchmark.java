@@ -0,0 +1,68 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.api.dto.BookDto;
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.model.Book;
+import com.example.bookshopapp.model.User;
+import com.example.bookshopapp.model.enums.BookStatus;
+import com.example.bookshopapp.repositories.Book2AuthorRepository;
+import com.example.bookshopapp.repositories.Book2UserRepository;
+import com.example.bookshopapp.repositories.BookFileTypeRepository;
+import com.example.bookshopapp.repositories.BookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookshopapp.utils.BenchmarkFixtures.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Формирование BookDto для списков книг (главная страница, подборки, поиск).
+ * Статус книги для авторизованного пользователя возвращает заглушка без обращения к базе данных.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BookServiceBenchmark {
+    private static final int PAGE_SIZE = 20;
+    private static final int AUTHORS_PER_BOOK = 3;
+
+    @Param({"false", "true"})
+    public boolean authenticated;
+
+    private BookService bookService;
+    private List<Book> books;
+
+    @Setup
+    public void setUp() {
+        User user = user();
+        AuthService authService = stub(AuthService.class);
+        when(authService.getCurrentUser()).thenReturn(authenticated ? user : null);
+        BooksRatingAndPopularityService booksRatingAndPopularityService = stub(BooksRatingAndPopularityService.class);
+        when(booksRatingAndPopularityService.getBookStatus(any(Book.class), eq(user))).thenReturn(BookStatus.CART);
+        BookRepository bookRepository = stub(BookRepository.class);
+        ResourceStorageService resourceStorageService = stub(ResourceStorageService.class);
+        CoverImageService coverImageService = new CoverImageService(bookRepository, resourceStorageService,
+                new BookShopConfig());
+        bookService = new BookService(bookRepository, resourceStorageService, stub(Book2UserRepository.class),
+                stub(Book2AuthorRepository.class), booksRatingAndPopularityService, stub(TagService.class),
+                stub(GenreService.class), authService, coverImageService, stub(BookFileTypeRepository.class));
+        books = books(PAGE_SIZE, AUTHORS_PER_BOOK);
+    }
+
+    @Benchmark
+    public BookDto getBookDto() {
+        return bookService.getBookDto(books.get(0));
+    }
+
+    @Benchmark
+    public List<BookDto> getBooksDto() {
+        return bookService.getBooksDto(books);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.api.dto.DistributionRating;
+import com.example.bookshopapp.exception.BookListWrongParameterException;
+import com.example.bookshopapp.model.Book;
+import com.example.bookshopapp.model.BookEvaluation;
+import com.example.bookshopapp.repositories.Book2UserRecentlyViewRepository;
+import com.example.bookshopapp.repositories.Book2UserRepository;
+import com.example.bookshopapp.repositories.BookEvaluationRepository;
+import com.example.bookshopapp.repositories.BookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookshopapp.utils.BenchmarkFixtures.books;
+import static com.example.bookshopapp.utils.BenchmarkFixtures.stub;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Расчет рейтинга, распределения оценок и индекса популярности книги.
+ * Репозитории заменены заглушками, которые возвращают evaluations оценок книги из памяти,
+ * поэтому измеряется агрегация, а не запросы к базе данных.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BooksRatingAndPopularityServiceBenchmark {
+
+    @Param({"10", "1000"})
+    public int evaluations;
+
+    private BooksRatingAndPopularityService booksRatingAndPopularityService;
+    private Book book;
+
+    @Setup
+    public void setUp() {
+        book = books(1, 1).get(0);
+        List<BookEvaluation> bookEvaluations = new ArrayList<>(evaluations);
+        for (int i = 0; i < evaluations; i++) {
+            BookEvaluation bookEvaluation = new BookEvaluation();
+            bookEvaluation.setId(i + 1);
+            bookEvaluation.setBook(book);
+            bookEvaluation.setValue((byte) (i % 5 + 1));
+            bookEvaluations.add(bookEvaluation);
+        }
+        BookRepository bookRepository = stub(BookRepository.class);
+        when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        BookEvaluationRepository bookEvaluationRepository = stub(BookEvaluationRepository.class);
+        when(bookEvaluationRepository.findAllByBookAndValueNot(book, (byte) 0)).thenReturn(bookEvaluations);
+        for (byte value = 1; value <= 5; value++) {
+            List<BookEvaluation> byValue = new ArrayList<>();
+            for (BookEvaluation bookEvaluation : bookEvaluations) {
+                if (bookEvaluation.getValue() == value) {
+                    byValue.add(bookEvaluation);
+                }
+            }
+            when(bookEvaluationRepository.findAllByBookAndValue(book, value)).thenReturn(byValue);
+        }
+        Book2UserRepository book2UserRepository = stub(Book2UserRepository.class);
+        when(book2UserRepository.countBooksByStatusAndBookId(anyString(), eq(book.getId()))).thenReturn(evaluations);
+        Book2UserRecentlyViewRepository book2UserRecentlyViewRepository = stub(Book2UserRecentlyViewRepository.class);
+        when(book2UserRecentlyViewRepository.countAllByBookAndTimeAfter(eq(book), any(LocalDateTime.class)))
+                .thenReturn(evaluations);
+        booksRatingAndPopularityService = new BooksRatingAndPopularityService(bookRepository, book2UserRepository,
+                bookEvaluationRepository, book2UserRecentlyViewRepository, stub(CookieService.class),
+                stub(AuthService.class), stub(Book2UserTypeService.class));
+    }
+
+    @Benchmark
+    public Book updateBookRating() {
+        return booksRatingAndPopularityService.updateBookRating(book);
+    }
+
+    @Benchmark
+    public DistributionRating getDistributionRatingBook() throws BookListWrongParameterException {
+        return booksRatingAndPopularityService.getDistributionRatingBook(book.getId());
+    }
+
+    @Benchmark
+    public Book updateBookPopularIndex() {
+        return booksRatingAndPopularityService.updateBookPopularIndex(book);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.service.utils.BookIdsCookieCodec;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookshopapp.utils.BenchmarkFixtures.stub;
+
+/**
+ * Запись и чтение cookie корзины и отложенных книг в компактном подписанном формате
+ * для списков от 1 до 500 книг, а также подсчет книг в cookie старого формата (slug через "/").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CookieServiceBenchmark {
+    private static final String SECRET = "apple";
+
+    @Param({"1", "20", "100", "500"})
+    public int size;
+
+    private CookieService cookieService;
+    private HttpServletResponse response;
+    private List<Integer> booksIds;
+    private String contents;
+    private String legacyContents;
+
+    @Setup
+    public void setUp() {
+        BookShopConfig config = new BookShopConfig();
+        config.setCookieSecret(SECRET);
+        cookieService = new CookieService(config);
+        response = stub(HttpServletResponse.class);
+        booksIds = new ArrayList<>(size);
+        int[] ids = new int[size];
+        List<String> slugs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids[i] = size * 7 - i * 3;
+            booksIds.add(ids[i]);
+            slugs.add("book-" + i);
+        }
+        contents = new BookIdsCookieCodec(SECRET, BookShopConfig.BOOK_COOKIE_MAX_IDS).encode(ids);
+        legacyContents = String.join("/", slugs);
+    }
+
+    @Benchmark
+    public void encode() {
+        cookieService.addBookIdsToCookieResponse(response, BookShopConfig.CART_COOKIE_NAME, booksIds);
+    }
+
+    @Benchmark
+    public int[] decode() {
+        return cookieService.getBookIdsByContents(contents);
+    }
+
+    @Benchmark
+    public int countLegacy() {
+        return cookieService.countCookieValuesByContents(legacyContents);
+    }
+}
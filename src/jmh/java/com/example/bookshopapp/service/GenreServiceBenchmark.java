@@ -0,0 +1,71 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.api.dto.GenreListDto;
+import com.example.bookshopapp.model.Genre;
+import com.example.bookshopapp.repositories.GenreRepository;
+import com.example.bookshopapp.service.utils.GenreNodeHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookshopapp.utils.BenchmarkFixtures.stub;
+import static org.mockito.Mockito.when;
+
+/**
+ * Построение дерева жанров: getGenreStructure целиком (создает ForkJoinPool на каждый вызов)
+ * и GenreNodeHandler в общем пуле. Дерево из трех уровней, у каждого жанра branches дочерних жанров.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GenreServiceBenchmark {
+    private static final int DEPTH = 3;
+
+    @Param({"3", "6"})
+    public int branches;
+
+    private GenreService genreService;
+    private List<Genre> sortedGenres;
+
+    @Setup
+    public void setUp() {
+        List<Genre> genres = new ArrayList<>();
+        addGenres(genres, 0, 1);
+        GenreRepository genreRepository = stub(GenreRepository.class);
+        when(genreRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(genres));
+        genreService = new GenreService(genreRepository);
+        sortedGenres = new ArrayList<>(genres);
+        sortedGenres.sort(Comparator.comparing(Genre::getParentId));
+    }
+
+    @Benchmark
+    public List<GenreListDto> getGenreStructure() {
+        return genreService.getGenreStructure();
+    }
+
+    @Benchmark
+    public GenreListDto genreNodeHandler() {
+        return ForkJoinPool.commonPool().invoke(new GenreNodeHandler(sortedGenres));
+    }
+
+    private void addGenres(List<Genre> genres, int parentId, int level) {
+        for (int i = 0; i < branches; i++) {
+            Genre genre = new Genre();
+            genre.setId(genres.size() + 1);
+            genre.setParentId(parentId);
+            genre.setName("Genre " + genre.getId());
+            genre.setSlug("genre-" + genre.getId());
+            genres.add(genre);
+            if (level < DEPTH) {
+                addGenres(genres, genre.getId(), level + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.config.WebClientConfiguration;
+import com.example.bookshopapp.model.YooCashOperation;
+import com.example.bookshopapp.repositories.BalanceTransactionRepository;
+import com.example.bookshopapp.repositories.UserRepository;
+import com.example.bookshopapp.repositories.YooCashOperationRepository;
+import com.example.bookshopapp.utils.PaymentProviderStub;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookshopapp.config.BookShopConfig.PAYMENT_CONFIRMATION_BATCH_SIZE;
+import static com.example.bookshopapp.service.PaymentServiceYooCashImpl.STATUS_PENDING;
+import static com.example.bookshopapp.utils.BenchmarkFixtures.stub;
+
+/**
+ * Пропускная способность проверки платежей (платежей в секунду) при опросе локальной заглушки платежной системы,
+ * отвечающей с задержкой PROVIDER_RESPONSE_DELAY_MILLIS, при последовательных и параллельных запросах статуса.
+ * Репозитории и менеджер транзакций заменены заглушками, поэтому измеряется только обмен с платежной системой.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PaymentConfirmationBenchmark {
+    private static final long PROVIDER_RESPONSE_DELAY_MILLIS = 20;
+
+    @Param({"1", "4", "16"})
+    public int concurrency;
+
+    private PaymentProviderStub paymentProvider;
+    private PaymentServiceYooCashImpl paymentService;
+
+    @Setup
+    public void setUp() {
+        paymentProvider = PaymentProviderStub.start(PROVIDER_RESPONSE_DELAY_MILLIS);
+        List<String> operationIds = new ArrayList<>(PAYMENT_CONFIRMATION_BATCH_SIZE);
+        for (int i = 0; i < PAYMENT_CONFIRMATION_BATCH_SIZE; i++) {
+            String operationId = "benchmark-payment-" + i;
+            paymentProvider.setPayment(operationId, STATUS_PENDING, "100.00");
+            operationIds.add(operationId);
+        }
+        BookShopConfig config = new BookShopConfig();
+        config.setPaymentUri(paymentProvider.getPaymentUri());
+        config.setPaymentId("benchmark");
+        config.setPaymentSecret("benchmark");
+        config.setPaymentConfirmationConcurrency(concurrency);
+
+        YooCashOperationRepository yooCashOperationRepository = stub(YooCashOperationRepository.class);
+        Mockito.when(yooCashOperationRepository.findDueOperationsForUpdate(ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(LocalDateTime.class), ArgumentMatchers.anyInt()))
+                .thenAnswer(invocation -> pendingOperations(operationIds));
+        Mockito.when(yooCashOperationRepository.findByOperationIdForUpdate(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> Optional.of(pendingOperation(invocation.getArgument(0))));
+
+        paymentService = new PaymentServiceYooCashImpl(stub(AuthService.class), stub(UserRepository.class),
+                stub(BalanceTransactionRepository.class), new WebClientConfiguration(config).webClientWithTimeout(),
+                yooCashOperationRepository, config, stub(PlatformTransactionManager.class),
+                stub(PaymentRequestCache.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        paymentProvider.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAYMENT_CONFIRMATION_BATCH_SIZE)
+    public void confirmDuePayments() {
+        paymentService.confirmDuePayments();
+    }
+
+    private static List<YooCashOperation> pendingOperations(List<String> operationIds) {
+        List<YooCashOperation> operations = new ArrayList<>(operationIds.size());
+        for (String operationId : operationIds) {
+            operations.add(pendingOperation(operationId));
+        }
+        return operations;
+    }
+
+    private static YooCashOperation pendingOperation(String operationId) {
+        YooCashOperation operation = new YooCashOperation();
+        operation.setOperationId(operationId);
+        operation.setStatus(STATUS_PENDING);
+        operation.setCheckAttempts(0);
+        return operation;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.api.dto.ReviewDto;
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.model.BookReview;
+import com.example.bookshopapp.repositories.BookReviewLikeRepository;
+import com.example.bookshopapp.repositories.BookReviewRepository;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookshopapp.utils.BenchmarkFixtures.stub;
+import static com.example.bookshopapp.utils.BenchmarkFixtures.user;
+
+/**
+ * Формирование отзывов книги (ReviewService.getReviewByBookId) с выделением короткого текста отзыва:
+ * короткий отзыв возвращается целиком, длинный обрезается по концу предложения между REVIEW_MIN_SHORT_LENGTH
+ * и REVIEW_MAX_SHORT_LENGTH символами, у длинного отзыва без точек поиск предложения не находит совпадения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReviewServiceBenchmark {
+    private static final String SENTENCE = "Pellentesque viverra pede ac diam, cras pellentesque volutpat dui. ";
+    private static final int LONG_REVIEW_LENGTH = 3000;
+    private static final int REVIEWS_COUNT = 20;
+    private static final int BOOK_ID = 1;
+
+    @Param({"short", "sentences", "noSentences"})
+    public String review;
+
+    private ReviewService reviewService;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        int length = review.equals("short") ? BookShopConfig.REVIEW_MIN_SHORT_LENGTH : LONG_REVIEW_LENGTH;
+        while (builder.length() < length) {
+            builder.append(SENTENCE);
+        }
+        String text = review.equals("noSentences") ? builder.toString().replace('.', ',') : builder.toString();
+        List<BookReview> bookReviews = new ArrayList<>(REVIEWS_COUNT);
+        for (int i = 1; i <= REVIEWS_COUNT; i++) {
+            BookReview bookReview = new BookReview();
+            bookReview.setId(i);
+            bookReview.setUser(user());
+            bookReview.setTime(LocalDateTime.of(2022, 10, 1, 12, 0).plusMinutes(i));
+            bookReview.setText(text);
+            bookReview.setRating(0);
+            bookReview.setBookReviewLikes(Collections.emptyList());
+            bookReviews.add(bookReview);
+        }
+        BookReviewRepository bookReviewRepository = stub(BookReviewRepository.class);
+        Mockito.when(bookReviewRepository.findBookReviewsByBookId(BOOK_ID)).thenReturn(bookReviews);
+        reviewService = new ReviewService(bookReviewRepository, stub(BookReviewLikeRepository.class),
+                stub(CookieService.class), stub(BookService.class), stub(AuthService.class));
+    }
+
+    @Benchmark
+    public List<ReviewDto> getReviewByBookId() {
+        return reviewService.getReviewByBookId(BOOK_ID);
+    }
+}
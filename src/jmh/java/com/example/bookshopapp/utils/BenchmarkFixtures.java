@@ -0,0 +1,72 @@
+package com.example.bookshopapp.utils;
+
+import com.example.bookshopapp.model.Author;
+import com.example.bookshopapp.model.Book;
+import com.example.bookshopapp.model.Book2Author;
+import com.example.bookshopapp.model.User;
+import com.example.bookshopapp.model.compositekey.BookAuthorId;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Данные и заглушки для бенчмарков.
+ * Заглушки создаются в режиме stubOnly: Mockito не запоминает вызовы, поэтому память не растет
+ * за время измерения, а время вызова заглушки мало по сравнению с измеряемым кодом.
+ */
+public class BenchmarkFixtures {
+    public static final int BENCHMARK_USER_ID = 2;
+
+    private BenchmarkFixtures() {
+    }
+
+    public static <T> T stub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    public static User user() {
+        User user = new User();
+        user.setId(BENCHMARK_USER_ID);
+        user.setHash("benchmark");
+        user.setName("Benchmark User");
+        return user;
+    }
+
+    /**
+     * Список книг с авторами, авторы каждой книги записаны в обратном порядке sortIndex
+     */
+    public static List<Book> books(int count, int authorsPerBook) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Book book = new Book();
+            book.setId(i);
+            book.setSlug("book-" + i);
+            book.setTitle("Book title " + i);
+            book.setImage("/assets/img/content/main/card.jpg");
+            book.setDescription("Description of the book " + i);
+            book.setPrice(100 + i * 10);
+            book.setDiscount((byte) (i % 50));
+            book.setRating((double) (i % 5));
+            book.setIsBestseller((byte) (i % 2));
+            for (int j = authorsPerBook; j > 0; j--) {
+                book.getAuthors().add(book2Author(book, i * authorsPerBook + j, j));
+            }
+            books.add(book);
+        }
+        return books;
+    }
+
+    private static Book2Author book2Author(Book book, int authorId, int sortIndex) {
+        Author author = new Author();
+        author.setId(authorId);
+        author.setSlug("author-" + authorId);
+        author.setName("Author " + authorId);
+        Book2Author book2Author = new Book2Author();
+        book2Author.setBookAuthorId(new BookAuthorId(book.getId(), authorId));
+        book2Author.setBook(book);
+        book2Author.setAuthor(author);
+        book2Author.setSortIndex(sortIndex);
+        return book2Author;
+    }
+}
@@ -15,6 +15,8 @@ public class BookDto {
     private Integer id;
     private String slug;
     private String image;
+    private String imageCard;
+    private String imageThumbnail;
     private String authors;
     @JsonIgnore
     private String authorSlug;
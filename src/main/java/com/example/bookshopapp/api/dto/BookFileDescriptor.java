@@ -0,0 +1,49 @@
+package com.example.bookshopapp.api.dto;
+
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+import java.net.URLConnection;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+
+/**
+ * Неизменяемое описание файла книги для скачивания, формируется одним запросом к базе данных по хэшу файла.
+ * Имя файла для скачивания - исходное имя загруженного файла, для файлов вне хранилища - имя файла на диске.
+ */
+@Getter
+public class BookFileDescriptor {
+    private final String hash;
+    private final String path;
+    private final String fileName;
+    private final MediaType mediaType;
+    private final Long size;
+    private final LocalDateTime lastModified;
+    private final String checksum;
+    private final Integer bookId;
+
+    public BookFileDescriptor(String hash, String path, String fileName, String mimeType, Long size,
+                              LocalDateTime lastModified, String checksum, Integer bookId) {
+        this.hash = hash;
+        this.path = path;
+        this.fileName = fileName != null ? fileName : Paths.get(path).getFileName().toString();
+        this.mediaType = getMediaType(this.fileName, mimeType);
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+        this.bookId = bookId;
+    }
+
+    /**
+     * MIME тип, сохраненный при загрузке или сканером файлов, либо определенный по имени файла
+     */
+    private static MediaType getMediaType(String fileName, String mimeType) {
+        if (mimeType == null) {
+            mimeType = URLConnection.guessContentTypeFromName(fileName);
+        }
+        if (mimeType == null) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+        return MediaType.parseMediaType(mimeType);
+    }
+}
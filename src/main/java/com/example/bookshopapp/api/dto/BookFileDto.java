@@ -14,6 +14,7 @@ public class BookFileDto implements Comparable<BookFileDto> {
     private String fileTypeDescription;
     private String fileSize;
     private String hash;
+    private String url;
 
     @Override
     public int hashCode() {
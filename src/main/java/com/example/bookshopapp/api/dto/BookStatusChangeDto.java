@@ -0,0 +1,21 @@
+package com.example.bookshopapp.api.dto;
+
+import com.example.bookshopapp.model.enums.BookStatusChangeResult;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "data model of book status change result")
+public class BookStatusChangeDto {
+    @ApiModelProperty("book id")
+    private Integer bookId;
+    @ApiModelProperty("result of the status change (CREATED, CHANGED, UNCHANGED, REMOVED, REJECTED, NOT_FOUND)")
+    private BookStatusChangeResult result;
+}
@@ -0,0 +1,22 @@
+package com.example.bookshopapp.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MethodMetricsDto {
+    private String method;
+    private Long count;
+    private Long meanMicros;
+    private Long p50Micros;
+    private Long p90Micros;
+    private Long p99Micros;
+    private Long maxMicros;
+    private Double meanQueries;
+    private Long maxQueries;
+}
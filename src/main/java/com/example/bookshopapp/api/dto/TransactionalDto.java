@@ -15,9 +15,12 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @ApiModel(description = "data model of transactional dto")
 public class TransactionalDto {
+    @JsonIgnore
+    private Integer id;
     private String time;
     @JsonIgnore
     private LocalDateTime localDateTime;
     private Integer value;
+    private Integer balance;
     private String description;
 }
@@ -0,0 +1,16 @@
+package com.example.bookshopapp.api.request.payment;
+
+import com.example.bookshopapp.api.response.payment.PaymentResponse;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PaymentNotificationRequest {
+    String type;
+    String event;
+    PaymentResponse object;
+}
@@ -0,0 +1,22 @@
+package com.example.bookshopapp.api.response;
+
+import com.example.bookshopapp.api.dto.BookStatusChangeDto;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@ApiModel(description = "data model of bulk book status change response")
+public class BookStatusChangeResponse extends ResultResponse {
+    @ApiModelProperty("per-book results of the status change")
+    private List<BookStatusChangeDto> books;
+
+    public BookStatusChangeResponse(List<BookStatusChangeDto> books) {
+        super(true);
+        this.books = books;
+    }
+}
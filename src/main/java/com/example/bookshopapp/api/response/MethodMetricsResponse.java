@@ -0,0 +1,21 @@
+package com.example.bookshopapp.api.response;
+
+import com.example.bookshopapp.api.dto.MethodMetricsDto;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "data model of method execution time metrics")
+public class MethodMetricsResponse {
+    @ApiModelProperty("execution time (microseconds) and SQL query count of the methods")
+    private List<MethodMetricsDto> methods;
+}
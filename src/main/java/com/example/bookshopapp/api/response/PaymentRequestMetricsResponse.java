@@ -0,0 +1,20 @@
+package com.example.bookshopapp.api.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "data model of payment request deduplication metrics")
+public class PaymentRequestMetricsResponse {
+    @ApiModelProperty("payment requests merged with an earlier request of the same user and sum")
+    private Long hits;
+    @ApiModelProperty("payment requests sent to the payment service")
+    private Long misses;
+}
@@ -16,6 +16,6 @@ import java.util.List;
 @AllArgsConstructor
 @ApiModel(description = "data model of transactional response")
 public class TransactionalListResponse {
-    private Integer count;
     private List<TransactionalDto> transactions;
+    private String nextCursor;
 }
@@ -1,29 +1,57 @@
 package com.example.bookshopapp.aspect;
 
+import com.example.bookshopapp.service.MethodMetricsService;
+import com.example.bookshopapp.service.utils.SqlQueryCounter;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+import static com.example.bookshopapp.config.BookShopConfig.LOGGING_METHOD_DEBUG_SAMPLE_RATE;
+
+/**
+ * Замер времени выполнения методов, отмеченных аннотацией LoggingMethod.
+ * Время и количество SQL запросов записываются в статистику метода (MethodMetricsService),
+ * в том числе при исключении.
+ * Аргументы и результат выводятся в лог только на уровне DEBUG и только для одного вызова
+ * из LOGGING_METHOD_DEBUG_SAMPLE_RATE, так как их преобразование в строку дороже самого замера.
+ */
 @Aspect
 @Component
 @Slf4j
 public class LoggerMethodAspect {
+    private final MethodMetricsService methodMetricsService;
+
+    @Autowired
+    public LoggerMethodAspect(MethodMetricsService methodMetricsService) {
+        this.methodMetricsService = methodMetricsService;
+    }
+
     @Around("@annotation(com.example.bookshopapp.aspect.LoggingMethod)")
     public Object execAdviceLogMethod(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
-        long start = System.currentTimeMillis();
-        Object result = proceedingJoinPoint.proceed();
-        log.info(String.format(
-                "%s (%s) : %s in %s[ms]",
-                ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod().getName(),
-                Arrays.toString(proceedingJoinPoint.getArgs()),
-                result,
-                System.currentTimeMillis() - start
-        ));
-        return result;
+        Method method = ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod();
+        long startQueries = SqlQueryCounter.getCount();
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = proceedingJoinPoint.proceed();
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            methodMetricsService.record(method, elapsed, SqlQueryCounter.getCount() - startQueries);
+            if (log.isDebugEnabled() && ThreadLocalRandom.current().nextInt(LOGGING_METHOD_DEBUG_SAMPLE_RATE) == 0) {
+                log.debug(String.format("%s (%s) : %s in %s[us]", method.getName(),
+                        Arrays.toString(proceedingJoinPoint.getArgs()), result,
+                        TimeUnit.NANOSECONDS.toMicros(elapsed)));
+            }
+        }
     }
 }
@@ -13,7 +13,6 @@ public class BookShopConfig {
     public static final String SORT_PARAM_RECOMMENDED = "rating";
     public static final String SORT_PARAM_PUBLICATION_DATE = "pubDate";
     public static final String SORT_PARAM_POPULAR_INDEX = "popularIndex";
-    public static final String SORT_PARAM_TRANSACTION = "time";
 
     public static final String BOOK_REVIEW_HASH_COOKIE_NAME = "rateBookReviewHash";
     public static final String CART_COOKIE_NAME = "cartContents";
@@ -38,6 +37,26 @@ public class BookShopConfig {
     public static final String TOKEN_CLEAR_BLACK_LIST_FREQUENCY = "0 0 * * * *"; //Every 1 hour
     public static final double RATIO_BYTES_TO_MB = 0.00000095367432;
     public static final String RATIO_BYTES_TO_MB_TEXT = "Mb";
+    public static final String FILE_CHECKSUM_ALGORITHM = "SHA-256";
+    public static final long BOOK_FILE_SCAN_DELAY = 1000 * 60 * 60L;
+    public static final long BOOK_FILE_SCAN_INITIAL_DELAY = 1000 * 60L;
+    public static final int BOOK_FILE_SCAN_PAGE_SIZE = 100;
+    public static final int BOOK_FILE_DESCRIPTOR_CACHE_MAX_SIZE = 10000;
+    public static final String CONTENT_STORE_DIR = "sha256";
+    public static final String CONTENT_QUARANTINE_DIR = "sha256-quarantine";
+    public static final long BOOK_FILE_SCRUB_DELAY = 1000 * 60 * 60 * 24L;
+    public static final long BOOK_FILE_SCRUB_INITIAL_DELAY = 1000 * 60 * 10L;
+    public static final long BOOK_FILE_SCRUB_MAX_BYTES_PER_SEC = 10L * 1024 * 1024;
+    public static final long BOOK_FILE_ORPHAN_GRACE_PERIOD = 1000 * 60 * 60L;
+    public static final String BOOK_COVERS_URI = "/book-covers/";
+    public static final String BOOK_DOWNLOAD_URI = "/books/download/";
+    public static final long DOWNLOAD_LINK_TTL_SEC = 60 * 15L;
+    public static final int COVER_IMAGE_THREADS = 2;
+    public static final int COVER_IMAGE_QUEUE_CAPACITY = 100;
+    public static final float COVER_IMAGE_JPEG_QUALITY = 0.85f;
+    public static final long COVER_IMAGE_MAX_PIXELS = 5000L * 5000;
+    public static final int COVER_IMAGE_BACKFILL_PAGE_SIZE = 100;
+    public static final long COVER_IMAGE_CACHE_MAX_AGE_DAYS = 365;
     public static final long DAYS_EVALUATION_VIEWS = 10;
 
     public static final int REVIEW_MIN_SHORT_LENGTH = 400;
@@ -60,7 +79,24 @@ public class BookShopConfig {
     public static final int LENGTH_IDEMPOTENCE_KEY = 20;
     public static final String IDEMPOTENCE_KEY_NAME = "Idempotence-Key";
     public static final int TIME_CACHING_PAYMENT_REQUEST_SEC = 30;
-    public static final int DELAY_PAYMENT_CONFIRMATION = 2000;
+    public static final int PAYMENT_REQUEST_CACHE_MAX_SIZE = 10000;
+    public static final int CHECKOUT_MAX_ATTEMPTS = 5;
+    public static final int TRANSACTIONS_PAGE_MAX_SIZE = 100;
+    public static final int TRANSACTIONS_EXPORT_FETCH_SIZE = 500;
+    public static final int DELAY_PAYMENT_CONFIRMATION = 15000;
+    public static final long PAYMENT_CONFIRMATION_FALLBACK_DELAY = 1000 * 60L;
+    public static final int PAYMENT_CONFIRMATION_BATCH_SIZE = 50;
+    public static final int PAYMENT_CONFIRMATION_MAX_ATTEMPTS = 40;
+    public static final long PAYMENT_CONFIRMATION_MAX_DELAY = 1000 * 60 * 10L;
+    public static final int RATE_LIMIT_STRIPES = 64;
+    public static final int RATE_LIMIT_MAX_KEYS_PER_STRIPE = 1024;
+    public static final int BOOK_COUNTERS_CACHE_MAX_USERS = 10000;
+    public static final long BOOK_COUNTERS_CACHE_TTL_SEC = 60 * 5L;
+    public static final int BOOK_COOKIE_MAX_IDS = 1000;
+    public static final int LOGGING_METHOD_DEBUG_SAMPLE_RATE = 100;
+    public static final int SQL_QUERY_REQUEST_WARN_THRESHOLD = 30;
+    public static final String SQL_QUERY_COUNT_HEADER = "X-Sql-Query-Count";
+    public static final int ENTITY_FETCH_BATCH_SIZE = 50;
 
     private String shopName;
     private Integer thPageBookShowLimit;
@@ -68,6 +104,8 @@ public class BookShopConfig {
     private String uploadPath;
     private String downloadPath;
     private Integer maxDownloadCount;
+    private String downloadLinkSecret;
+    private String cookieSecret;
 
     private String authSecret;
 
@@ -88,6 +126,11 @@ public class BookShopConfig {
     private Integer codeExpiredTime;
     private Integer codeTimeOut;
 
+    private Integer rateLimitContactCapacity;
+    private Integer rateLimitContactRefillSec;
+    private Integer rateLimitIpCapacity;
+    private Integer rateLimitIpRefillSec;
+
     private String oauthRedirectURI;
 
     private String paymentSecret;
@@ -97,4 +140,7 @@ public class BookShopConfig {
     private String paymentMethodData;
     private String paymentRedirectUriBalance;
     private String paymentRedirectUriCart;
+    private Integer paymentConfirmationConcurrency;
+
+    private Boolean sqlQueryCountHeader;
 }
\ No newline at end of file
@@ -8,6 +8,9 @@ public class LanguageMessage {
     public static final String EX_MSG_USER_NOT_FOUND = "User not found!";
     public static final String EX_MSG_WRONG_PARAM = "Wrong values passed to one or more parameters";
     public static final String EX_MSG_EMPTY_PARAM = "An empty parameter in the query string";
+    public static final String EX_MSG_COOKIE_BOOKS_LIMIT = "Too many books in the cart or in the postponed list";
+    public static final String EX_MSG_CHECKOUT_CONFLICT = "The cart or the balance was changed during the purchase. " +
+            "Try again.";
     public static final String EX_MSG_MISSING_RESULT = "The result of the query from the database is missing. " +
             "Invalid request parameter.";
     public static final String VIEW_STRING_AND_OTHER_EN = " and other";
@@ -30,6 +33,9 @@ public class LanguageMessage {
             "кода. Попробуйте запросить код позже";
     public static final String EX_MSG_CODE_IS_EXCEEDED_COUNT_TRIALS_VALUE_EN = "Exceeded the number of attempts to " +
             "enter the code. Try requesting the code later";
+    public static final String EX_MSG_TOO_MANY_REQUESTS_RU = "Слишком много запросов кода подтверждения. " +
+            "Повторите попытку через ";
+    public static final String EX_MSG_TOO_MANY_REQUESTS_EN = "Too many confirmation code requests. Try again in ";
     public static final String EX_MSG_OPERATION_FAILED_RU = "Операция не выполнена. повторите попытку позже";
     public static final String EX_MSG_OPERATION_FAILED_EN = "Operation failed. Try again later";
 
@@ -98,6 +104,13 @@ public class LanguageMessage {
         return EX_MSG_CODE_IS_EXCEEDED_COUNT_TRIALS_VALUE_EN;
     }
 
+    public static String getExMsgTooManyRequests(long value) {
+        if (LocaleContextHolder.getLocale().getLanguage().equals("ru")) {
+            return EX_MSG_TOO_MANY_REQUESTS_RU + value + " сек.";
+        }
+        return EX_MSG_TOO_MANY_REQUESTS_EN + value + " sec.";
+    }
+
     public static String getExMsgOperationFailed() {
         if (LocaleContextHolder.getLocale().getLanguage().equals("ru")) {
             return EX_MSG_OPERATION_FAILED_RU;
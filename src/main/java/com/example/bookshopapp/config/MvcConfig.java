@@ -1,5 +1,6 @@
 package com.example.bookshopapp.config;
 
+import com.example.bookshopapp.interceptor.CoverCacheInterceptor;
 import com.example.bookshopapp.interceptor.HeaderInterceptor;
 import com.example.bookshopapp.interceptor.UserInterceptor;
 import com.example.bookshopapp.service.AuthService;
@@ -25,7 +26,7 @@ public class MvcConfig implements WebMvcConfigurer {
 
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/book-covers/**")
+        registry.addResourceHandler(BookShopConfig.BOOK_COVERS_URI + "**")
                 .addResourceLocations("file:" + config.getUploadPath() + "/");
     }
 
@@ -33,5 +34,6 @@ public class MvcConfig implements WebMvcConfigurer {
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(new HeaderInterceptor(bookStatusService, authService, config));
         registry.addInterceptor(new UserInterceptor(authService));
+        registry.addInterceptor(new CoverCacheInterceptor()).addPathPatterns(BookShopConfig.BOOK_COVERS_URI + "**");
     }
 }
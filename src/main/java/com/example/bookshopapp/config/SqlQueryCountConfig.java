@@ -0,0 +1,40 @@
+package com.example.bookshopapp.config;
+
+import com.example.bookshopapp.interceptor.SqlQueryCountFilter;
+import com.example.bookshopapp.service.utils.SqlQueryCounter;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import static com.example.bookshopapp.config.BookShopConfig.ENTITY_FETCH_BATCH_SIZE;
+
+@Configuration
+public class SqlQueryCountConfig {
+
+    /**
+     * Подключение счетчика запросов к Hibernate.
+     * Lazy коллекции и связи загружаются пачками по ENTITY_FETCH_BATCH_SIZE, чтобы вывод списка книг
+     * с авторами не выполнял отдельный запрос на каждую книгу.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer sqlQueryCounterCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlQueryCounter());
+            properties.put(AvailableSettings.DEFAULT_BATCH_FETCH_SIZE, String.valueOf(ENTITY_FETCH_BATCH_SIZE));
+        };
+    }
+
+    /**
+     * Фильтр выполняется первым, чтобы учитывать запросы фильтров безопасности
+     */
+    @Bean
+    public FilterRegistrationBean<SqlQueryCountFilter> sqlQueryCountFilter(BookShopConfig config) {
+        FilterRegistrationBean<SqlQueryCountFilter> registration = new FilterRegistrationBean<>(
+                new SqlQueryCountFilter(Boolean.TRUE.equals(config.getSqlQueryCountHeader())));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -5,9 +5,11 @@ import com.example.bookshopapp.api.response.ApiResponse;
 import com.example.bookshopapp.api.response.ResultResponse;
 import com.example.bookshopapp.config.BookShopConfig;
 import com.example.bookshopapp.exception.CheckCodeException;
+import com.example.bookshopapp.exception.RateLimitException;
 import com.example.bookshopapp.exception.SendCodeException;
 import com.example.bookshopapp.exception.SendSMSException;
 import com.example.bookshopapp.service.AuthService;
+import com.example.bookshopapp.service.ConfirmationRateLimitService;
 import com.example.bookshopapp.service.LoginService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.swagger.annotations.Api;
@@ -22,6 +24,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.security.NoSuchAlgorithmException;
 
@@ -31,18 +34,23 @@ import java.security.NoSuchAlgorithmException;
 public class AuthRestApiController {
     private final AuthService authService;
     private final LoginService loginService;
+    private final ConfirmationRateLimitService rateLimitService;
 
     @Autowired
-    public AuthRestApiController(AuthService authService, LoginService loginService) {
+    public AuthRestApiController(AuthService authService, LoginService loginService,
+                                 ConfirmationRateLimitService rateLimitService) {
         this.authService = authService;
         this.loginService = loginService;
+        this.rateLimitService = rateLimitService;
     }
 
     @PostMapping("/requestContactConfirmation")
     public ResponseEntity<ApiResponse<ResultResponse>> handleRequestContactConfirmation(
-            @RequestBody ContactConfirmationPayload payload) throws NoSuchAlgorithmException,
-            JsonProcessingException, SendCodeException, NotFoundException, SendSMSException {
+            @RequestBody ContactConfirmationPayload payload, HttpServletRequest request)
+            throws NoSuchAlgorithmException, JsonProcessingException, SendCodeException, NotFoundException,
+            SendSMSException, RateLimitException {
         if (payload.getContact() != null && !payload.getContact().isEmpty()) {
+            rateLimitService.checkCodeRequest(payload.getContact(), request.getRemoteAddr());
             authService.registerContactConfirmation(payload.getContact());
         }
         return getResultResponseStatus200(new ResultResponse(true));
@@ -50,9 +58,11 @@ public class AuthRestApiController {
 
     @PostMapping("/requestLoginContactConfirmation")
     public ResponseEntity<ApiResponse<ResultResponse>> handleRequestLoginContactConfirmation(
-            @RequestBody ContactConfirmationPayload payload) throws NoSuchAlgorithmException,
-            JsonProcessingException, SendCodeException, SendSMSException {
+            @RequestBody ContactConfirmationPayload payload, HttpServletRequest request)
+            throws NoSuchAlgorithmException, JsonProcessingException, SendCodeException, SendSMSException,
+            RateLimitException {
         if (payload.getContact() != null && !payload.getContact().isEmpty()) {
+            rateLimitService.checkCodeRequest(payload.getContact(), request.getRemoteAddr());
             authService.loginContactConfirmation(payload.getContact());
         }
         return getResultResponseStatus200(new ResultResponse(true));
@@ -1,6 +1,7 @@
 package com.example.bookshopapp.controllers;
 
 import com.example.bookshopapp.api.dto.BookDto;
+import com.example.bookshopapp.api.dto.BookFileDescriptor;
 import com.example.bookshopapp.api.dto.GenreListDto;
 import com.example.bookshopapp.api.request.StringRequest;
 import com.example.bookshopapp.api.response.BookListResponse;
@@ -13,17 +14,21 @@ import com.example.bookshopapp.model.Genre;
 import com.example.bookshopapp.model.Tag;
 import com.example.bookshopapp.model.User;
 import com.example.bookshopapp.service.*;
+import com.example.bookshopapp.service.utils.FileRangeSender;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_RESOURCE_NOT_FOUND;
@@ -160,21 +165,51 @@ public class BooksController {
         throw new ViewEmptyParameterException(LanguageMessage.EX_MSG_EMPTY_PARAM);
     }
 
+    @PostMapping("/books/{slug}/file/save")
+    public String saveNewBookFile(@RequestParam("file") MultipartFile file, @RequestParam("type") Integer typeId,
+                                  @PathVariable("slug") StringRequest slugRequest)
+            throws IOException, BookListWrongParameterException, ViewEmptyParameterException {
+        if (slugRequest != null && !file.isEmpty()) {
+            bookService.addBookFile(file, slugRequest.getStr(), typeId);
+            return ("redirect:/books/" + slugRequest.getStr());
+        }
+        throw new ViewEmptyParameterException(LanguageMessage.EX_MSG_EMPTY_PARAM);
+    }
+
+    /**
+     * Скачивание файла книги по подписанной ссылке (ResourceStorageService.getDownloadUrl).
+     * Подпись и срок действия ссылки проверяются без обращения к базе данных, пользователь определяется по ссылке.
+     */
     @GetMapping("/books/download/{hash}")
-    public ResponseEntity<ByteArrayResource> bookFile(@PathVariable("hash") StringRequest hash)
+    public void bookFile(@PathVariable("hash") StringRequest hash,
+                         @RequestParam(value = "user", required = false) Integer userId,
+                         @RequestParam(value = "expires", required = false) Long expires,
+                         @RequestParam(value = "signature", required = false) String signature,
+                         HttpServletRequest request, HttpServletResponse response)
             throws IOException, ViewNotFoundParameterException {
-        if (hash != null) {
-            if (!storage.isAvailableFileAndUpdateCountDownload(hash.getStr())) {
-                throw new ViewNotFoundParameterException(EX_MSG_RESOURCE_NOT_FOUND);
-            }
-            byte[] data = storage.getFileByHash(hash.getStr());
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" +
-                            storage.getFilePathByHash(hash.getStr()).getFileName().toString())
-                    .contentType(storage.getFileMediaTypeByHash(hash.getStr()))
-                    .contentLength(data.length)
-                    .body(new ByteArrayResource(data));
+        if (hash == null || userId == null || expires == null ||
+                !storage.isValidDownloadLink(hash.getStr(), userId, expires, signature)) {
+            throw new ViewNotFoundParameterException(EX_MSG_RESOURCE_NOT_FOUND);
+        }
+        BookFileDescriptor descriptor = storage.getBookFileDescriptor(hash.getStr());
+        Path path = storage.getBookFilePath(descriptor);
+        if (!Files.isReadable(path)) {
+            throw new ViewNotFoundParameterException(EX_MSG_RESOURCE_NOT_FOUND);
+        }
+        String etag = storage.getBookFileEtag(descriptor, path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        boolean isNotModified = FileRangeSender.isNotModified(request, etag, lastModified);
+        boolean isAvailable = isNotModified ? storage.isFileDownloaded(descriptor, userId) :
+                storage.isAvailableFileAndUpdateCountDownload(descriptor, userId, signature,
+                        FileRangeSender.isRangeNotFromStart(request));
+        if (!isAvailable) {
+            throw new ViewNotFoundParameterException(EX_MSG_RESOURCE_NOT_FOUND);
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        if (isNotModified) {
+            FileRangeSender.sendNotModified(response, etag, lastModified);
+            return;
         }
-        throw new ViewNotFoundParameterException(EX_MSG_RESOURCE_NOT_FOUND);
+        FileRangeSender.send(path, descriptor.getMediaType(), etag, descriptor.getFileName(), request, response);
     }
 }
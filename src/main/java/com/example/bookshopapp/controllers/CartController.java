@@ -1,7 +1,7 @@
 package com.example.bookshopapp.controllers;
 
 import com.example.bookshopapp.api.dto.BookDto;
-import com.example.bookshopapp.exception.PaymentException;
+import com.example.bookshopapp.exception.TransactionalException;
 import com.example.bookshopapp.model.User;
 import com.example.bookshopapp.model.enums.BookStatus;
 import com.example.bookshopapp.service.AuthService;
@@ -9,22 +9,19 @@ import com.example.bookshopapp.service.BookService;
 import com.example.bookshopapp.service.BookStatusService;
 import com.example.bookshopapp.service.TransactionalService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
-import static org.springframework.web.context.WebApplicationContext.SCOPE_SESSION;
-
-
 @Controller
-@Scope(value = SCOPE_SESSION)
 public class CartController {
     private final BookService bookService;    private final BookStatusService bookStatusService;
     private final AuthService authService;
@@ -83,13 +80,19 @@ public class CartController {
         return "postponed";
     }
 
+    /**
+     * Оплата корзины. Если покупка не выполнена из-за параллельного изменения корзины или баланса,
+     * пользователь возвращается в корзину с сообщением о необходимости повторить покупку.
+     */
     @GetMapping("/order")
-    public String handleOrder() throws PaymentException {
-        String uri = transactionalService.handleCartPaid();
-        if (uri.isEmpty()) {
-            return "redirect:cart";
+    public CompletableFuture<String> handleOrder(RedirectAttributes redirectAttributes) {
+        try {
+            return transactionalService.handleCartPaid()
+                    .thenApply(uri -> uri.isEmpty() ? "redirect:cart" : "redirect:" + uri);
+        } catch (TransactionalException ex) {
+            redirectAttributes.addFlashAttribute("checkoutConflict", true);
+            return CompletableFuture.completedFuture("redirect:cart");
         }
-        return "redirect:" + uri;
     }
 
     private void addModelBooksAttrFromCookie(String contents, String countBookAttrName, Model model) {
@@ -1,6 +1,7 @@
 package com.example.bookshopapp.controllers;
 
 import com.example.bookshopapp.api.request.PayRequest;
+import com.example.bookshopapp.api.request.payment.PaymentNotificationRequest;
 import com.example.bookshopapp.api.response.ApiResponse;
 import com.example.bookshopapp.api.response.RedirectResponse;
 import com.example.bookshopapp.api.response.ResultResponse;
@@ -13,17 +14,19 @@ import com.example.bookshopapp.service.TransactionalService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
 import static com.example.bookshopapp.service.TransactionalService.SORT_ASC;
-import static org.springframework.web.context.WebApplicationContext.SCOPE_SESSION;
 
 @RestController
 @RequestMapping("/api")
-@Scope(value = SCOPE_SESSION)
 @Api("cart REST controller")
 public class CartRestController {
 
@@ -41,18 +44,35 @@ public class CartRestController {
 
     @PostMapping("/payment")
     @ApiOperation("redirection to the payment system")
-    public ResponseEntity<ApiResponse<ResultResponse>> handlePaymentRedirection(
-            @RequestBody PayRequest payRequest) throws PaymentException {
-        String confirmationUri = paymentService.topUpAccountBalance(payRequest, config.getPaymentRedirectUriBalance());
-        return getResultResponseStatus200(new RedirectResponse(true, true, confirmationUri));
+    public CompletableFuture<ResponseEntity<ApiResponse<ResultResponse>>> handlePaymentRedirection(
+            @RequestBody PayRequest payRequest) {
+        return paymentService.topUpAccountBalance(payRequest, config.getPaymentRedirectUriBalance())
+                .thenApply(confirmationUri ->
+                        getResultResponseStatus200(new RedirectResponse(true, true, confirmationUri)));
+    }
+
+    @PostMapping("/payments/notify")
+    @ApiOperation("payment system notification about the payment status change")
+    public ResponseEntity<ApiResponse<ResultResponse>> handlePaymentNotification(
+            @RequestBody PaymentNotificationRequest notification) throws PaymentException {
+        paymentService.handlePaymentNotification(notification);
+        return getResultResponseStatus200(new ResultResponse(true));
     }
 
     @GetMapping("/transactions")
     public ResponseEntity<ApiResponse<TransactionalListResponse>> handleTransactionListResponse(
             @RequestParam(defaultValue = SORT_ASC) String sort,
-            @RequestParam(defaultValue = "0") Integer offset,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "5") Integer limit) throws ViewEmptyParameterException {
-        return getResultResponseStatus200(transactionalService.getTransactionalList(sort, offset, limit));
+        return getResultResponseStatus200(transactionalService.getTransactionalList(sort, cursor, limit));
+    }
+
+    @GetMapping("/transactions/export")
+    @ApiOperation("export of the user balance transactions to CSV")
+    public void handleTransactionListExport(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions.csv\"");
+        transactionalService.exportTransactionalList(response.getWriter());
     }
 
     private <T>ResponseEntity<ApiResponse<T>> getResultResponseStatus200(T data) {
@@ -5,6 +5,7 @@ import com.example.bookshopapp.api.request.BookReviewRateRequest;
 import com.example.bookshopapp.api.request.BookReviewRequest;
 import com.example.bookshopapp.api.request.ChangeBookStatusRequest;
 import com.example.bookshopapp.api.response.ApiResponse;
+import com.example.bookshopapp.api.response.BookStatusChangeResponse;
 import com.example.bookshopapp.api.response.ResultResponse;
 import com.example.bookshopapp.exception.WrongParameterException;
 import com.example.bookshopapp.service.BookStatusService;
@@ -60,6 +61,18 @@ public class GeneralRestApiController {
         return getResultResponseStatus200(new ResultResponse(true));
     }
 
+    @PostMapping("/changeBookStatus/bulk")
+    @ApiOperation("change status of several books with per-book results")
+    public ResponseEntity<ApiResponse<ResultResponse>> handleChangeBookStatusBulk(
+            @RequestBody ChangeBookStatusRequest changeBookStatusRequest,
+            @CookieValue(name = "cartContents", required = false) String cartContents,
+            @CookieValue(name = "postponedContents", required = false) String postponedContents,
+            HttpServletResponse response) throws WrongParameterException {
+        return getResultResponseStatus200(new BookStatusChangeResponse(bookStatusService
+                .handleChangeBookStatusBulk(changeBookStatusRequest.getBooksIds(),
+                        changeBookStatusRequest.getStatus(), cartContents, postponedContents, response)));
+    }
+
     @PostMapping("/rateBookReview")
     @PreAuthorize("hasRole('ROLE_USER')")
     @ApiOperation("Add a book review like")
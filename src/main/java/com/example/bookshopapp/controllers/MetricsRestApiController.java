@@ -0,0 +1,51 @@
+package com.example.bookshopapp.controllers;
+
+import com.example.bookshopapp.api.response.ApiResponse;
+import com.example.bookshopapp.api.response.MethodMetricsResponse;
+import com.example.bookshopapp.api.response.PaymentRequestMetricsResponse;
+import com.example.bookshopapp.service.MethodMetricsService;
+import com.example.bookshopapp.service.PaymentRequestCache;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/metrics")
+@Api("metrics REST controller")
+public class MetricsRestApiController {
+    private final MethodMetricsService methodMetricsService;
+    private final PaymentRequestCache paymentRequestCache;
+
+    @Autowired
+    public MetricsRestApiController(MethodMetricsService methodMetricsService,
+                                    PaymentRequestCache paymentRequestCache) {
+        this.methodMetricsService = methodMetricsService;
+        this.paymentRequestCache = paymentRequestCache;
+    }
+
+    @GetMapping("/methods")
+    @ApiOperation("execution time and SQL query count of the logged methods")
+    public ResponseEntity<ApiResponse<MethodMetricsResponse>> handleMethodMetrics() {
+        ApiResponse<MethodMetricsResponse> response = new ApiResponse<>();
+        response.setDebugMessage("successful request");
+        response.setStatus(HttpStatus.OK);
+        response.setData(new MethodMetricsResponse(methodMetricsService.getMethodMetrics()));
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/payment-requests")
+    @ApiOperation("deduplication hits and misses of the payment requests")
+    public ResponseEntity<ApiResponse<PaymentRequestMetricsResponse>> handlePaymentRequestMetrics() {
+        ApiResponse<PaymentRequestMetricsResponse> response = new ApiResponse<>();
+        response.setDebugMessage("successful request");
+        response.setStatus(HttpStatus.OK);
+        response.setData(new PaymentRequestMetricsResponse(paymentRequestCache.getHits(),
+                paymentRequestCache.getMisses()));
+        return ResponseEntity.ok(response);
+    }
+}
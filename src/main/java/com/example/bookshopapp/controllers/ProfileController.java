@@ -7,18 +7,16 @@ import com.example.bookshopapp.service.AuthService;
 import com.example.bookshopapp.service.TransactionalService;
 import javassist.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 
 import static com.example.bookshopapp.service.TransactionalService.SORT_ASC;
-import static org.springframework.web.context.WebApplicationContext.SCOPE_SESSION;
 
 @Controller
-@Scope(value = SCOPE_SESSION)
 public class ProfileController {
+    private static final int TRANSACTIONS_PROFILE_PAGE_SIZE = 5;
     private final AuthService authService;
     private final TransactionalService transactionalService;
 
@@ -51,11 +49,11 @@ public class ProfileController {
 
     private void handelModelProfile(Model model, boolean saved) throws ViewEmptyParameterException {
         TransactionalListResponse transactionalListResponse =
-                transactionalService.getTransactionalList(SORT_ASC, 0, 5);
+                transactionalService.getTransactionalList(SORT_ASC, null, TRANSACTIONS_PROFILE_PAGE_SIZE);
         model.addAttribute("curUser", authService.getProfileCurUser());
         model.addAttribute("transactionalList", transactionalListResponse.getTransactions());
-        model.addAttribute("transactionalShowMore", transactionalListResponse.getCount() !=
-                transactionalListResponse.getTransactions().size());
+        model.addAttribute("transactionalShowMore", transactionalListResponse.getNextCursor() != null);
+        model.addAttribute("transactionalCursor", transactionalListResponse.getNextCursor());
         model.addAttribute("isSaved", saved);
     }
 }
@@ -62,7 +62,8 @@ public class GlobalExceptionHandler {
             SendCodeException.class,
             CheckCodeException.class,
             SendSMSException.class,
-            PaymentException.class
+            PaymentException.class,
+            RateLimitException.class
     })
     public final ResponseEntity<ApiResponse<ResultResponse>> handleException(Exception ex, WebRequest request) {
         HttpHeaders httpHeaders = new HttpHeaders();
@@ -124,6 +125,13 @@ public class GlobalExceptionHandler {
             return handleResultErrorException(paymentException, httpHeaders, httpStatus, request);
         }
 
+        if (ex instanceof RateLimitException) {
+            HttpStatus httpStatus = HttpStatus.TOO_MANY_REQUESTS;
+            RateLimitException rateLimitException = (RateLimitException) ex;
+            log.info("RateLimitException " + ex.getMessage());
+            return handleResultErrorException(rateLimitException, httpHeaders, httpStatus, request);
+        }
+
         HttpStatus httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
         log.error(ex.getMessage());
         return handleExceptionInternal(ex, null, httpHeaders, httpStatus, request);
@@ -0,0 +1,7 @@
+package com.example.bookshopapp.exception;
+
+public class RateLimitException extends Exception {
+    public RateLimitException(String message) {
+        super(message);
+    }
+}
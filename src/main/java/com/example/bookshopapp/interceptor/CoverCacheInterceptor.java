@@ -0,0 +1,38 @@
+package com.example.bookshopapp.interceptor;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Заголовки кэширования обложек книг.
+ * Варианты обложек названы по хэшу содержимого и никогда не изменяются: для них ETag формируется из имени файла,
+ * ответ 304 отправляется без обращения к файлу, а браузеру разрешено хранить файл без повторной проверки.
+ * Исходные обложки могут быть заменены под тем же именем, поэтому браузер проверяет их при каждом обращении
+ * по дате изменения файла (Last-Modified формирует обработчик ресурсов).
+ */
+public class CoverCacheInterceptor implements HandlerInterceptor {
+    private static final Pattern COVER_VARIANT_NAME = Pattern.compile(".*/([0-9a-f]{64}-[a-z]+)\\.jpg");
+    private static final String CACHE_CONTROL_IMMUTABLE = CacheControl
+            .maxAge(BookShopConfig.COVER_IMAGE_CACHE_MAX_AGE_DAYS, TimeUnit.DAYS)
+            .cachePublic().getHeaderValue() + ", immutable";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Matcher matcher = COVER_VARIANT_NAME.matcher(request.getRequestURI());
+        if (!matcher.matches()) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+            return true;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL_IMMUTABLE);
+        return !new ServletWebRequest(request, response).checkNotModified("\"" + matcher.group(1) + "\"");
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.bookshopapp.interceptor;
 
-import com.example.bookshopapp.api.dto.BookDto;
 import com.example.bookshopapp.api.request.SearchWordRequest;
 import com.example.bookshopapp.config.BookShopConfig;
 import com.example.bookshopapp.model.User;
@@ -14,7 +13,7 @@ import org.springframework.web.servlet.ModelAndView;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class HeaderInterceptor implements HandlerInterceptor {
@@ -41,13 +40,11 @@ public class HeaderInterceptor implements HandlerInterceptor {
             modelAndView.addObject("countPostponedBooks", getCountBooksFromCookie(
                     request, BookShopConfig.POSTPONED_COOKIE_NAME));
         } else {
-            modelAndView.addObject("countCartBooks",
-                    bookStatusService.getCountBooksFromDataBase(user, BookStatus.CART));
-            modelAndView.addObject("countPostponedBooks",
-                    bookStatusService.getCountBooksFromDataBase(user, BookStatus.KEPT));
-            Integer countPaidBooks = bookStatusService.getCountBooksFromDataBase(user, BookStatus.PAID);
-            Integer countArchivedBooks = bookStatusService.getCountBooksFromDataBase(user, BookStatus.ARCHIVED);
-            modelAndView.addObject("countPaidBooks", countPaidBooks + countArchivedBooks);
+            Map<BookStatus, Integer> countBooks = bookStatusService.getCountBooksFromDataBase(user);
+            modelAndView.addObject("countCartBooks", countBooks.getOrDefault(BookStatus.CART, 0));
+            modelAndView.addObject("countPostponedBooks", countBooks.getOrDefault(BookStatus.KEPT, 0));
+            modelAndView.addObject("countPaidBooks", countBooks.getOrDefault(BookStatus.PAID, 0) +
+                    countBooks.getOrDefault(BookStatus.ARCHIVED, 0));
         }
         modelAndView.addObject("searchWordDto", new SearchWordRequest());
         modelAndView.addObject("shopName", config.getShopName());
@@ -59,8 +56,7 @@ public class HeaderInterceptor implements HandlerInterceptor {
         }
         for (Cookie cookie : request.getCookies()) {
             if (cookie.getName().equals(nameCookie)) {
-                List<BookDto> bookCart = bookStatusService.getBooksFromCookie(cookie.getValue());
-                return bookCart.size();
+                return bookStatusService.getCountBooksFromCookie(cookie.getValue());
             }
         }
         return 0;
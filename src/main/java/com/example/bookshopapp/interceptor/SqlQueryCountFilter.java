@@ -0,0 +1,92 @@
+package com.example.bookshopapp.interceptor;
+
+import com.example.bookshopapp.service.utils.SqlQueryCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.example.bookshopapp.config.BookShopConfig.BOOK_DOWNLOAD_URI;
+import static com.example.bookshopapp.config.BookShopConfig.SQL_QUERY_COUNT_HEADER;
+import static com.example.bookshopapp.config.BookShopConfig.SQL_QUERY_REQUEST_WARN_THRESHOLD;
+
+/**
+ * Подсчет SQL запросов за время обработки HTTP запроса.
+ * Если запросов больше SQL_QUERY_REQUEST_WARN_THRESHOLD, в лог выводится предупреждение (вероятно, N+1).
+ * В режиме разработки количество запросов возвращается в заголовке SQL_QUERY_COUNT_HEADER. Для этого тело
+ * ответа буферизуется, чтобы учесть запросы при формировании шаблона и сериализации JSON, поэтому
+ * скачивание файлов в этом режиме не буферизуется и заголовок не получает.
+ * Асинхронные запросы (CompletableFuture) обрабатываются как в ShallowEtagHeaderFilter: фильтр выполняется
+ * и при асинхронной обработке результата, запросы всех этапов суммируются, а буфер ответа передается клиенту
+ * только после завершения последнего этапа.
+ */
+@Slf4j
+public class SqlQueryCountFilter extends OncePerRequestFilter {
+    private static final String QUERY_COUNT_ATTRIBUTE = SqlQueryCountFilter.class.getName() + ".QUERY_COUNT";
+    private static final String RESPONSE_WRAPPER_ATTRIBUTE = SqlQueryCountFilter.class.getName() + ".RESPONSE";
+
+    private final boolean isHeaderEnabled;
+
+    public SqlQueryCountFilter(boolean isHeaderEnabled) {
+        this.isHeaderEnabled = isHeaderEnabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = SqlQueryCounter.getCount();
+        ContentCachingResponseWrapper responseWrapper = getResponseWrapper(request, response);
+        try {
+            chain.doFilter(request, responseWrapper == null ? response : responseWrapper);
+        } finally {
+            Object previousCount = request.getAttribute(QUERY_COUNT_ATTRIBUTE);
+            long count = (previousCount == null ? 0 : (Long) previousCount) + SqlQueryCounter.getCount() - start;
+            if (isAsyncStarted(request)) {
+                request.setAttribute(QUERY_COUNT_ATTRIBUTE, count);
+            } else {
+                checkQueryCount(request, count);
+                if (responseWrapper != null) {
+                    if (!responseWrapper.isCommitted()) {
+                        responseWrapper.setHeader(SQL_QUERY_COUNT_HEADER, String.valueOf(count));
+                    }
+                    responseWrapper.copyBodyToResponse();
+                }
+            }
+        }
+    }
+
+    /**
+     * Буфер ответа создается при первой обработке запроса и используется повторно при асинхронной обработке
+     *
+     * @return буфер ответа или null, если ответ не буферизуется
+     */
+    private ContentCachingResponseWrapper getResponseWrapper(HttpServletRequest request,
+                                                             HttpServletResponse response) {
+        if (!isHeaderEnabled || request.getRequestURI().startsWith(BOOK_DOWNLOAD_URI)) {
+            return null;
+        }
+        if (isAsyncDispatch(request)) {
+            return (ContentCachingResponseWrapper) request.getAttribute(RESPONSE_WRAPPER_ATTRIBUTE);
+        }
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        request.setAttribute(RESPONSE_WRAPPER_ATTRIBUTE, responseWrapper);
+        return responseWrapper;
+    }
+
+    private void checkQueryCount(HttpServletRequest request, long count) {
+        if (count > SQL_QUERY_REQUEST_WARN_THRESHOLD) {
+            log.warn("SqlQueryCountFilter - " + count + " SQL queries for request: " +
+                    request.getMethod() + " " + request.getRequestURI());
+        }
+    }
+}
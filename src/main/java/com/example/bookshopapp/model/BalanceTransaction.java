@@ -27,6 +27,10 @@ public class BalanceTransaction {
     @ApiModelProperty("transaction size (positive — crediting, negative — debiting)")
     private Integer value;
 
+    @Column(name = "balance_after", columnDefinition = "INT")
+    @ApiModelProperty("user balance after the transaction")
+    private Integer balanceAfter;
+
     @Column(columnDefinition = "TEXT", nullable = false)
     @ApiModelProperty("transaction description: if crediting, then from where, if debiting, then to what")
     private String description;
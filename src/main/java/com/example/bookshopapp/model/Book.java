@@ -44,6 +44,14 @@ public class Book {
     @ApiModelProperty("cover image")
     private String image;
 
+    @Column(name = "image_hash", columnDefinition = "VARCHAR(64)")
+    @ApiModelProperty("SHA-256 of the cover image content, names the generated cover variants")
+    private String imageHash;
+
+    @Column(name = "image_version", columnDefinition = "INT DEFAULT 0", nullable = false)
+    @ApiModelProperty("number of the cover upload, increases with every new cover")
+    private int imageVersion;
+
     @Column(columnDefinition = "TEXT")
     @ApiModelProperty("book description")
     private String description;
@@ -6,6 +6,7 @@ import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Getter
 @Setter
@@ -28,9 +29,29 @@ public class BookFile {
     private String hash;
 
     @Column(columnDefinition = "VARCHAR(255)", nullable = false)
-    @ApiModelProperty("file path")
+    @ApiModelProperty("file path relative to the download folder")
     private String path;
 
+    @Column(name = "file_name", columnDefinition = "VARCHAR(255)")
+    @ApiModelProperty("original file name used for downloading")
+    private String fileName;
+
+    @Column(name = "size", columnDefinition = "BIGINT")
+    @ApiModelProperty("file size in bytes")
+    private Long size;
+
+    @Column(name = "checksum", columnDefinition = "VARCHAR(64)")
+    @ApiModelProperty("SHA-256 checksum of the file content (hex)")
+    private String checksum;
+
+    @Column(name = "mime_type", columnDefinition = "VARCHAR(255)")
+    @ApiModelProperty("file MIME type")
+    private String mimeType;
+
+    @Column(name = "last_modified", columnDefinition = "TIMESTAMP")
+    @ApiModelProperty("date and time of the last file modification on disk")
+    private LocalDateTime lastModified;
+
     @ManyToOne
     @JoinColumn(name = "book_id", columnDefinition = "INT", referencedColumnName = "id", nullable = false)
     private Book book;
@@ -10,7 +10,8 @@ import javax.persistence.*;
 @Getter
 @Setter
 @Entity
-@Table(name = "file_download")
+@Table(name = "file_download", uniqueConstraints = @UniqueConstraint(name = "file_download_user_id_book_id_key",
+        columnNames = {"user_id", "book_id"}))
 @ApiModel(description = "data model of fileDownload entity")
 public class FileDownload {
 
@@ -30,4 +31,8 @@ public class FileDownload {
     @Column(columnDefinition = "INT DEFAULT 1", nullable = false)
     @ApiModelProperty("number of downloads")
     private Integer count;
+
+    @Column(name = "resume_token", columnDefinition = "VARCHAR(64)")
+    @ApiModelProperty("signature of the download link of the last counted download, only this link can resume it")
+    private String resumeToken;
 }
\ No newline at end of file
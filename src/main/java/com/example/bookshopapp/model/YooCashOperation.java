@@ -42,4 +42,12 @@ public class YooCashOperation {
 
     @Column(name = "payment_method", columnDefinition = "VARCHAR(255)")
     private String paymentMethod;
+
+    @Column(name = "next_check_at", columnDefinition = "TIMESTAMP")
+    @ApiModelProperty("time of the next payment status check, null if the check is not required")
+    private LocalDateTime nextCheckAt;
+
+    @Column(name = "check_attempts", columnDefinition = "INT", nullable = false)
+    @ApiModelProperty("number of payment status checks")
+    private int checkAttempts;
 }
@@ -0,0 +1,5 @@
+package com.example.bookshopapp.model.enums;
+
+public enum BookStatusChangeResult {
+    CREATED, CHANGED, UNCHANGED, REMOVED, REJECTED, NOT_FOUND
+}
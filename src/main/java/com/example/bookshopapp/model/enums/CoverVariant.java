@@ -0,0 +1,27 @@
+package com.example.bookshopapp.model.enums;
+
+public enum CoverVariant {
+    THUMBNAIL("thumbnail", 80, 120), CARD("card", 240, 360), DETAIL("detail", 480, 720);
+
+    private final String name;
+    private final int width;
+    private final int height;
+
+    CoverVariant(String name, int width, int height) {
+        this.name = name;
+        this.width = width;
+        this.height = height;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.bookshopapp.repositories;
+
+import com.example.bookshopapp.api.dto.TransactionalDto;
+import com.example.bookshopapp.model.BalanceTransaction;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface BalanceTransactionRepositoryCustom {
+
+    /**
+     * Пакетная вставка операций по балансу одним JDBC batch
+     * Идентификаторы операций генерируются базой данных и в объекты не возвращаются
+     */
+    void insertAll(List<BalanceTransaction> balanceTransactions);
+
+    /**
+     * Страница операций пользователя с пагинацией по ключу (time, id), без подсчета общего количества
+     *
+     * @param ascending - порядок сортировки по времени
+     * @param afterTime - время последней операции предыдущей страницы, null - первая страница
+     * @param afterId   - id последней операции предыдущей страницы
+     * @param limit     - размер страницы
+     */
+    List<TransactionalDto> findPageByUserId(Integer userId, boolean ascending, LocalDateTime afterTime,
+                                            Integer afterId, int limit);
+
+    /**
+     * Построчная выборка всех операций пользователя в хронологическом порядке без загрузки истории в память
+     * Метод нужно вызывать в транзакции, иначе драйвер PostgreSQL не использует курсор и читает выборку целиком
+     */
+    void streamByUserId(Integer userId, Consumer<TransactionalDto> consumer);
+}
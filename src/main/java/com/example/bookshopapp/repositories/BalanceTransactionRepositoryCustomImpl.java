@@ -0,0 +1,88 @@
+package com.example.bookshopapp.repositories;
+
+import com.example.bookshopapp.api.dto.TransactionalDto;
+import com.example.bookshopapp.model.BalanceTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.example.bookshopapp.config.BookShopConfig.TRANSACTIONS_EXPORT_FETCH_SIZE;
+
+public class BalanceTransactionRepositoryCustomImpl implements BalanceTransactionRepositoryCustom {
+    private static final String INSERT_SQL = "INSERT INTO balance_transaction " +
+            "(time, value, balance_after, description, user_id, book_id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_SQL = "SELECT id, time, value, balance_after, description " +
+            "FROM balance_transaction WHERE user_id = ? ";
+    private static final String PAGE_ASC_SQL = SELECT_SQL + "ORDER BY time, id LIMIT ?";
+    private static final String PAGE_DESC_SQL = SELECT_SQL + "ORDER BY time DESC, id DESC LIMIT ?";
+    private static final String NEXT_PAGE_ASC_SQL = SELECT_SQL + "AND (time, id) > (?, ?) ORDER BY time, id LIMIT ?";
+    private static final String NEXT_PAGE_DESC_SQL = SELECT_SQL +
+            "AND (time, id) < (?, ?) ORDER BY time DESC, id DESC LIMIT ?";
+    private static final String STREAM_SQL = SELECT_SQL + "ORDER BY time, id";
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private static final RowMapper<TransactionalDto> TRANSACTIONAL_DTO_MAPPER = (rs, rowNum) -> {
+        LocalDateTime time = rs.getTimestamp("time").toLocalDateTime();
+        int balance = rs.getInt("balance_after");
+        return new TransactionalDto(rs.getInt("id"), TIME_FORMATTER.format(time), time, rs.getInt("value"),
+                rs.wasNull() ? null : balance, rs.getString("description"));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public BalanceTransactionRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAll(List<BalanceTransaction> balanceTransactions) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, balanceTransactions, balanceTransactions.size(),
+                (ps, transaction) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(transaction.getTime()));
+                    ps.setInt(2, transaction.getValue());
+                    if (transaction.getBalanceAfter() == null) {
+                        ps.setNull(3, Types.INTEGER);
+                    } else {
+                        ps.setInt(3, transaction.getBalanceAfter());
+                    }
+                    ps.setString(4, transaction.getDescription());
+                    ps.setInt(5, transaction.getUser().getId());
+                    if (transaction.getBook() == null) {
+                        ps.setNull(6, Types.INTEGER);
+                    } else {
+                        ps.setInt(6, transaction.getBook().getId());
+                    }
+                });
+    }
+
+    @Override
+    public List<TransactionalDto> findPageByUserId(Integer userId, boolean ascending, LocalDateTime afterTime,
+                                                   Integer afterId, int limit) {
+        if (afterTime == null || afterId == null) {
+            return jdbcTemplate.query(ascending ? PAGE_ASC_SQL : PAGE_DESC_SQL, TRANSACTIONAL_DTO_MAPPER,
+                    userId, limit);
+        }
+        return jdbcTemplate.query(ascending ? NEXT_PAGE_ASC_SQL : NEXT_PAGE_DESC_SQL, TRANSACTIONAL_DTO_MAPPER,
+                userId, Timestamp.valueOf(afterTime), afterId, limit);
+    }
+
+    @Override
+    public void streamByUserId(Integer userId, Consumer<TransactionalDto> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(STREAM_SQL);
+            ps.setFetchSize(TRANSACTIONS_EXPORT_FETCH_SIZE);
+            ps.setInt(1, userId);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(TRANSACTIONAL_DTO_MAPPER.mapRow(rs, rs.getRow())));
+    }
+}
@@ -5,10 +5,13 @@ import com.example.bookshopapp.model.Book2User;
 import com.example.bookshopapp.model.User;
 import com.example.bookshopapp.model.compositekey.BookUserId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -51,5 +54,52 @@ public interface Book2UserRepository extends JpaRepository<Book2User, BookUserId
             "WHERE u.id = :userId AND b2ut.code = :status")
     Integer countBook2UserByUserAndStatusBook(@Param("userId") Integer userId, @Param("status") String status);
 
+    /**
+     * Количество книг пользователя по каждому типу связи
+     *
+     * @return список пар [id типа связи, количество]
+     */
+    @Query(value = "SELECT b2u.book2UserType.id, COUNT(b2u) FROM Book2User b2u " +
+            "WHERE b2u.user.id = :userId " +
+            "GROUP BY b2u.book2UserType.id")
+    List<Object[]> countBook2UserByUserGroupByType(@Param("userId") Integer userId);
+
     Optional<Book2User> getBook2UserByUserAndBook(User user, Book book);
+
+    @Query(value = "SELECT b2u FROM Book2User b2u " +
+            "JOIN FETCH b2u.book2UserType " +
+            "WHERE b2u.user.id = :userId AND b2u.book.id IN :bookIds")
+    List<Book2User> getBook2UsersByUserIdAndBookIds(@Param("userId") Integer userId,
+                                                    @Param("bookIds") Collection<Integer> bookIds);
+
+    /**
+     * Создание связей или изменение типа существующих связей одним запросом.
+     * Связь изменяется только если её текущий тип входит в changeableTypeIds.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO book2user (book_id, user_id, type_id, time) " +
+            "SELECT b.id, :userId, :typeId, :time FROM book b WHERE b.id IN :bookIds " +
+            "ON CONFLICT (book_id, user_id) DO UPDATE SET type_id = EXCLUDED.type_id, time = EXCLUDED.time " +
+            "WHERE book2user.type_id IN :changeableTypeIds",
+            nativeQuery = true)
+    int upsertBook2UserLinks(@Param("userId") Integer userId, @Param("bookIds") Collection<Integer> bookIds,
+                             @Param("typeId") Integer typeId, @Param("time") LocalDateTime time,
+                             @Param("changeableTypeIds") Collection<Integer> changeableTypeIds);
+
+    @Modifying
+    @Query(value = "UPDATE book2user SET type_id = :typeId, time = :time " +
+            "WHERE user_id = :userId AND book_id IN :bookIds " +
+            "AND type_id IN :changeableTypeIds",
+            nativeQuery = true)
+    int updateBook2UserLinks(@Param("userId") Integer userId, @Param("bookIds") Collection<Integer> bookIds,
+                             @Param("typeId") Integer typeId, @Param("time") LocalDateTime time,
+                             @Param("changeableTypeIds") Collection<Integer> changeableTypeIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM book2user " +
+            "WHERE user_id = :userId AND book_id IN :bookIds " +
+            "AND type_id IN :changeableTypeIds",
+            nativeQuery = true)
+    int deleteBook2UserLinks(@Param("userId") Integer userId, @Param("bookIds") Collection<Integer> bookIds,
+                             @Param("changeableTypeIds") Collection<Integer> changeableTypeIds);
 }
@@ -1,12 +1,24 @@
 package com.example.bookshopapp.repositories;
 
+import com.example.bookshopapp.api.dto.BookFileDescriptor;
 import com.example.bookshopapp.model.BookFile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
 public interface BookFileRepository extends JpaRepository<BookFile, Integer> {
-    Optional<BookFile> findBookFileByHash(String hash);
+    @Query(value = "SELECT new com.example.bookshopapp.api.dto.BookFileDescriptor(" +
+            "f.hash, f.path, f.fileName, f.mimeType, f.size, f.lastModified, f.checksum, f.book.id) " +
+            "FROM BookFile f WHERE f.hash = :hash")
+    Optional<BookFileDescriptor> findBookFileDescriptorByHash(@Param("hash") String hash);
+
+    Slice<BookFile> findAllBy(Pageable pageable);
+
+    long countByPath(String path);
 }
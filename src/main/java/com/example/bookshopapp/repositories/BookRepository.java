@@ -4,9 +4,11 @@ import com.example.bookshopapp.model.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.Collection;
@@ -70,4 +72,32 @@ public interface BookRepository extends JpaRepository<Book, Integer> {
             "LEFT JOIN rv.user u " +
             "WHERE u = :user ORDER BY rv.time DESC")
     Page<Book> findAllViewedBooksByUser(@Param("user") User user, Pageable pageable);
+
+    /**
+     * Выборка книг с загруженной обложкой, для которой еще не созданы уменьшенные варианты
+     */
+    @Query(value = "SELECT b FROM Book b " +
+            "WHERE b.id > :afterId AND b.imageHash IS NULL AND b.image LIKE :imagePrefix ORDER BY b.id")
+    List<Book> findBooksWithoutCoverVariants(@Param("imagePrefix") String imagePrefix,
+                                             @Param("afterId") Integer afterId, Pageable pageable);
+
+    /**
+     * Замена обложки книги. Хэш обложки сбрасывается, номер загрузки обложки увеличивается
+     *
+     * @return новый номер загрузки обложки или пустое значение, если книга не найдена
+     */
+    @Transactional
+    @Query(value = "UPDATE book SET image = :image, image_hash = NULL, image_version = image_version + 1 " +
+            "WHERE id = :id RETURNING image_version", nativeQuery = true)
+    Optional<Integer> replaceImage(@Param("id") Integer id, @Param("image") String image);
+
+    /**
+     * Сохранение хэша обложки, если обложка не была заменена за время создания вариантов.
+     * Путь к обложке при повторной загрузке не меняется, поэтому загрузка определяется по номеру imageVersion
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE Book b SET b.imageHash = :imageHash WHERE b.id = :id AND b.imageVersion = :imageVersion")
+    int updateImageHash(@Param("id") Integer id, @Param("imageVersion") int imageVersion,
+                        @Param("imageHash") String imageHash);
 }
@@ -1,14 +1,32 @@
 package com.example.bookshopapp.repositories;
 
-import com.example.bookshopapp.model.Book;
 import com.example.bookshopapp.model.FileDownload;
-import com.example.bookshopapp.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Repository
 public interface FileDownloadRepository extends JpaRepository<FileDownload, Integer> {
-    Optional<FileDownload> getByBookAndUser(Book book, User user);
+    Optional<FileDownload> getByBookIdAndUserId(Integer bookId, Integer userId);
+
+    /**
+     * Атомарное увеличение счетчика скачиваний. Запись создается при первом скачивании,
+     * счетчик увеличивается только если он меньше maxCount. Вместе со счетчиком сохраняется токен продолжения
+     * скачивания (подпись ссылки), по которому засчитанное скачивание можно продолжить
+     *
+     * @return новое значение счетчика или пустое значение, если лимит скачиваний исчерпан
+     */
+    @Transactional
+    @Query(value = "INSERT INTO file_download (user_id, book_id, count, resume_token) " +
+            "VALUES (:userId, :bookId, 1, CAST(:resumeToken AS VARCHAR)) " +
+            "ON CONFLICT (user_id, book_id) DO UPDATE SET count = file_download.count + 1, " +
+            "resume_token = EXCLUDED.resume_token " +
+            "WHERE file_download.count < :maxCount " +
+            "RETURNING count", nativeQuery = true)
+    Optional<Integer> incrementCount(@Param("bookId") Integer bookId, @Param("userId") Integer userId,
+                                     @Param("maxCount") Integer maxCount, @Param("resumeToken") String resumeToken);
 }
@@ -2,6 +2,7 @@ package com.example.bookshopapp.repositories;
 
 import com.example.bookshopapp.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,4 +21,21 @@ public interface UserRepository extends JpaRepository<User, Integer> {
             "LEFT JOIN u.userContacts c WHERE c.type = 'EMAIL' " +
             "AND c.approved = 1 AND c.contact = :email")
     Optional<User> findUserByApprovedEmail(@Param("email") String email);
+
+    @Query(value = "SELECT u.balance FROM User u WHERE u.id = :userId")
+    Integer getBalanceById(@Param("userId") Integer userId);
+
+    /**
+     * Списание с баланса пользователя, если средств достаточно
+     *
+     * @return 1 - списание выполнено, 0 - средств недостаточно
+     */
+    @Modifying
+    @Query(value = "UPDATE users SET balance = balance - :amount WHERE id = :userId AND balance >= :amount",
+            nativeQuery = true)
+    int debitBalance(@Param("userId") Integer userId, @Param("amount") Integer amount);
+
+    @Modifying
+    @Query(value = "UPDATE users SET balance = balance + :amount WHERE id = :userId", nativeQuery = true)
+    int creditBalance(@Param("userId") Integer userId, @Param("amount") Integer amount);
 }
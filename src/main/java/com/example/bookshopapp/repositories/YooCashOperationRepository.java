@@ -2,11 +2,34 @@ package com.example.bookshopapp.repositories;
 
 import com.example.bookshopapp.model.YooCashOperation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface YooCashOperationRepository extends JpaRepository<YooCashOperation, Integer> {
     Optional<YooCashOperation> findByOperationId(String operationId);
-}
\ No newline at end of file
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "SELECT o FROM YooCashOperation o WHERE o.operationId = :operationId")
+    Optional<YooCashOperation> findByOperationIdForUpdate(@Param("operationId") String operationId);
+
+    /**
+     * Выборка операций, по которым наступило время проверки статуса платежа
+     * Строки, заблокированные другими узлами приложения, пропускаются
+     */
+    @Query(value = "SELECT * FROM yoo_cash_operation " +
+            "WHERE status = :status AND next_check_at <= :now " +
+            "ORDER BY next_check_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<YooCashOperation> findDueOperationsForUpdate(@Param("status") String status,
+                                                      @Param("now") LocalDateTime now,
+                                                      @Param("limit") int limit);
+}
@@ -75,8 +75,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         http
                 .csrf().disable()
                 .authorizeRequests()
-                .antMatchers("/my/**", "/profile",
-                        "/order", "/books/viewed", "/books/download/**").authenticated() //hasRole("USER")
+                .antMatchers("/books/*/file/save", "/books/*/img/save", "/api/metrics/**").hasRole("ADMIN")
+                .antMatchers("/my/**", "/profile", "/order", "/books/viewed").authenticated() //hasRole("USER")
                 .antMatchers("/**").permitAll()
                 .and()
                 .formLogin()
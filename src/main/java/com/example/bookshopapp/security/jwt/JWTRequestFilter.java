@@ -37,6 +37,14 @@ public class JWTRequestFilter extends OncePerRequestFilter {
         this.bookStatusService = bookStatusService;
     }
 
+    /**
+     * Ссылки на скачивание файлов подписаны для пользователя, поэтому токен для них не проверяется
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(BookShopConfig.BOOK_DOWNLOAD_URI);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest httpServletRequest,
                                     HttpServletResponse httpServletResponse,
@@ -0,0 +1,124 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.model.Book2UserType;
+import com.example.bookshopapp.model.enums.BookStatus;
+import com.example.bookshopapp.repositories.Book2UserTypeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * Справочник типов связей книги и пользователя.
+ * Таблица book2user_type неизменна во время работы приложения, поэтому загружается один раз при старте
+ * и далее используется из памяти. Отсутствующие в базе данных типы создаются при загрузке.
+ * Тип связи, которого нет в справочнике, означает расхождение с базой данных, поэтому приводит к исключению,
+ * а не к повторной загрузке.
+ */
+@Service
+@Slf4j
+public class Book2UserTypeService {
+    private final Book2UserTypeRepository book2UserTypeRepository;
+    private Map<BookStatus, Book2UserType> typesByStatus = Collections.emptyMap();
+    private Map<Integer, BookStatus> statusesByTypeId = Collections.emptyMap();
+
+    @Autowired
+    public Book2UserTypeService(Book2UserTypeRepository book2UserTypeRepository) {
+        this.book2UserTypeRepository = book2UserTypeRepository;
+    }
+
+    @PostConstruct
+    public void loadBook2UserTypes() {
+        Map<BookStatus, Book2UserType> types = new EnumMap<>(BookStatus.class);
+        Map<Integer, BookStatus> statuses = new HashMap<>();
+        for (Book2UserType book2UserType : book2UserTypeRepository.findAll()) {
+            try {
+                BookStatus status = BookStatus.valueOf(book2UserType.getCode());
+                types.put(status, book2UserType);
+                statuses.put(book2UserType.getId(), status);
+            } catch (IllegalArgumentException ex) {
+                statuses.put(book2UserType.getId(), null);
+                log.warn("Book2UserTypeService - unknown book to user type code: " + book2UserType.getCode());
+            }
+        }
+        for (BookStatus status : BookStatus.values()) {
+            if (status.equals(BookStatus.UNLINK) || types.containsKey(status)) {
+                continue;
+            }
+            Book2UserType book2UserType = new Book2UserType();
+            book2UserType.setCode(status.getStatus());
+            book2UserType.setName(status.getName());
+            book2UserType = book2UserTypeRepository.save(book2UserType);
+            types.put(status, book2UserType);
+            statuses.put(book2UserType.getId(), status);
+            log.info("Book2UserTypeService - create book to user type: " + status);
+        }
+        typesByStatus = Collections.unmodifiableMap(types);
+        statusesByTypeId = Collections.unmodifiableMap(statuses);
+    }
+
+    /**
+     * Метод возвращает тип связи по статусу книги
+     *
+     * @param status - статус книги, кроме UNLINK
+     */
+    public Book2UserType getBook2UserType(BookStatus status) {
+        Book2UserType book2UserType = typesByStatus.get(status);
+        if (book2UserType == null) {
+            throw new IllegalArgumentException("Book2UserTypeService - no book to user type for status: " + status);
+        }
+        return book2UserType;
+    }
+
+    /**
+     * Метод возвращает id типов связи по статусам книги
+     *
+     * @param statuses - статусы книги, кроме UNLINK
+     */
+    public List<Integer> getBook2UserTypeIds(Collection<BookStatus> statuses) {
+        List<Integer> ids = new ArrayList<>(statuses.size());
+        for (BookStatus status : statuses) {
+            ids.add(getBook2UserType(status).getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Метод возвращает статус книги по типу связи
+     *
+     * @return BookStatus или null, если тип связи не задан или его код неизвестен
+     */
+    public BookStatus getBookStatus(Book2UserType book2UserType) {
+        if (book2UserType == null) {
+            return null;
+        }
+        return getBookStatus(book2UserType.getId());
+    }
+
+    /**
+     * Метод возвращает статус книги по id типа связи
+     *
+     * @return BookStatus или null, если id не задан или код типа связи неизвестен
+     * @throws IllegalStateException - типа связи нет в справочнике
+     */
+    public BookStatus getBookStatus(Integer book2UserTypeId) {
+        if (book2UserTypeId == null) {
+            return null;
+        }
+        if (!statusesByTypeId.containsKey(book2UserTypeId)) {
+            throw new IllegalStateException("Book2UserTypeService - unknown book to user type id: " +
+                    book2UserTypeId);
+        }
+        return statusesByTypeId.get(book2UserTypeId);
+    }
+
+    /**
+     * Метод проверяет, что тип связи соответствует купленной книге (PAID или ARCHIVED)
+     */
+    public boolean isPaid(Book2UserType book2UserType) {
+        BookStatus status = getBookStatus(book2UserType);
+        return BookStatus.PAID.equals(status) || BookStatus.ARCHIVED.equals(status);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.model.BookFile;
+import com.example.bookshopapp.repositories.BookFileRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+import static com.example.bookshopapp.config.BookShopConfig.BOOK_FILE_SCAN_DELAY;
+import static com.example.bookshopapp.config.BookShopConfig.BOOK_FILE_SCAN_INITIAL_DELAY;
+import static com.example.bookshopapp.config.BookShopConfig.BOOK_FILE_SCAN_PAGE_SIZE;
+
+/**
+ * Фоновая сверка метаданных файлов книг с файлами на диске
+ * Файлы книг добавляются импортом в базу данных, поэтому метаданные новых файлов заполняются при первом запуске
+ * после старта приложения, а затем периодически (BOOK_FILE_SCAN_DELAY) сверяются с диском.
+ * Записи читаются страницами по BOOK_FILE_SCAN_PAGE_SIZE, файлы читаются только при изменении размера или даты.
+ */
+@Service
+@Slf4j
+public class BookFileMetadataScanner {
+    private final BookFileRepository bookFileRepository;
+    private final ResourceStorageService resourceStorageService;
+
+    @Autowired
+    public BookFileMetadataScanner(BookFileRepository bookFileRepository,
+                                   ResourceStorageService resourceStorageService) {
+        this.bookFileRepository = bookFileRepository;
+        this.resourceStorageService = resourceStorageService;
+    }
+
+    @Scheduled(initialDelay = BOOK_FILE_SCAN_INITIAL_DELAY, fixedDelay = BOOK_FILE_SCAN_DELAY)
+    public void scanBookFiles() {
+        int updated = 0;
+        int unavailable = 0;
+        Pageable pageable = PageRequest.of(0, BOOK_FILE_SCAN_PAGE_SIZE, Sort.by("id"));
+        Slice<BookFile> bookFiles;
+        do {
+            bookFiles = bookFileRepository.findAllBy(pageable);
+            for (BookFile bookFile : bookFiles) {
+                try {
+                    if (resourceStorageService.updateBookFileMetadata(bookFile)) {
+                        updated++;
+                    }
+                } catch (IOException ex) {
+                    unavailable++;
+                    log.warn("Book file is not available: " + bookFile.getPath() + " " + ex.getMessage());
+                }
+            }
+            pageable = bookFiles.nextPageable();
+        } while (bookFiles.hasNext());
+        log.info("Book files scan completed. Updated: " + updated + " unavailable: " + unavailable);
+    }
+}
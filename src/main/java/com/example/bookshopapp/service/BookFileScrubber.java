@@ -0,0 +1,186 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.repositories.BookFileRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static com.example.bookshopapp.config.BookShopConfig.BOOK_FILE_SCRUB_DELAY;
+import static com.example.bookshopapp.config.BookShopConfig.BOOK_FILE_SCRUB_INITIAL_DELAY;
+
+/**
+ * Фоновая проверка хранилища файлов книг с адресацией по содержимому
+ * Для каждого файла хранилища:
+ * - если на файл не ссылается ни одна запись BookFile дольше BOOK_FILE_ORPHAN_GRACE_PERIOD, файл переносится
+ *   в карантин и удаляется при следующей проверке, если ссылки на него так и не появились
+ * - иначе содержимое файла сверяется с контрольной суммой из имени файла
+ * Загрузка файла с тем же содержимым может сохранить запись BookFile между проверкой и переносом. Поэтому после
+ * переноса ссылки проверяются повторно и файл возвращается, а загрузка сама восстанавливает файл, если после
+ * сохранения записи его нет в хранилище.
+ * Чтение выполняется со скоростью не более BOOK_FILE_SCRUB_MAX_BYTES_PER_SEC, чтобы проверка не мешала скачиванию.
+ * Незавершенные загрузки (временные файлы) старше BOOK_FILE_ORPHAN_GRACE_PERIOD также удаляются.
+ */
+@Service
+@Slf4j
+public class BookFileScrubber {
+    private final BookFileRepository bookFileRepository;
+    private final ResourceStorageService resourceStorageService;
+    private final BookShopConfig config;
+
+    @Autowired
+    public BookFileScrubber(BookFileRepository bookFileRepository, ResourceStorageService resourceStorageService,
+                            BookShopConfig config) {
+        this.bookFileRepository = bookFileRepository;
+        this.resourceStorageService = resourceStorageService;
+        this.config = config;
+    }
+
+    @Scheduled(initialDelay = BOOK_FILE_SCRUB_INITIAL_DELAY, fixedDelay = BOOK_FILE_SCRUB_DELAY)
+    public void scrubBookFiles() {
+        Path storePath = resourceStorageService.getContentStorePath();
+        if (!Files.isDirectory(storePath)) {
+            return;
+        }
+        int removed = clearQuarantine();
+        int verified = 0;
+        int corrupted = 0;
+        int quarantined = 0;
+        try (Stream<Path> paths = Files.walk(storePath)) {
+            Iterator<Path> iterator = paths.filter(Files::isRegularFile).iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                try {
+                    if (isOrphan(path)) {
+                        if (isUploadTemp(path)) {
+                            Files.deleteIfExists(path);
+                            removed++;
+                            log.info("Unfinished book file upload removed: " + path);
+                        } else if (quarantine(path)) {
+                            quarantined++;
+                            log.info("Unreferenced book file moved to quarantine: " + path);
+                        }
+                    } else if (!isUploadTemp(path)) {
+                        if (!isIntact(path)) {
+                            corrupted++;
+                            log.error("Book file is corrupted, checksum mismatch: " + path);
+                        }
+                        verified++;
+                    }
+                } catch (IOException ex) {
+                    log.warn("Book file is not available: " + path + " " + ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Book file store is not available: " + storePath + " " + ex.getMessage());
+        }
+        log.info("Book files scrub completed. Verified: " + verified + " corrupted: " + corrupted +
+                " quarantined: " + quarantined + " removed: " + removed);
+    }
+
+    /**
+     * Удаление файлов, перенесенных в карантин при предыдущей проверке.
+     * Файлы, на которые с тех пор появились ссылки, возвращаются в хранилище.
+     *
+     * @return количество удаленных файлов
+     */
+    private int clearQuarantine() {
+        Path quarantinePath = resourceStorageService.getQuarantinePath();
+        if (!Files.isDirectory(quarantinePath)) {
+            return 0;
+        }
+        int removed = 0;
+        try (Stream<Path> paths = Files.list(quarantinePath)) {
+            Iterator<Path> iterator = paths.filter(Files::isRegularFile).iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                String contentPath = resourceStorageService.getContentPath(path.getFileName().toString());
+                try {
+                    if (bookFileRepository.countByPath(contentPath) > 0) {
+                        restore(path, contentPath);
+                        log.info("Referenced book file restored from quarantine: " + contentPath);
+                    } else {
+                        Files.deleteIfExists(path);
+                        removed++;
+                        log.info("Unreferenced book file removed: " + contentPath);
+                    }
+                } catch (IOException ex) {
+                    log.warn("Book file is not available: " + path + " " + ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Book file quarantine is not available: " + quarantinePath + " " + ex.getMessage());
+        }
+        return removed;
+    }
+
+    /**
+     * Перенос файла в карантин. Если за время проверки на файл появилась ссылка или загрузка обновила
+     * дату изменения файла, файл сразу возвращается в хранилище.
+     *
+     * @return true, если файл остался в карантине
+     */
+    private boolean quarantine(Path path) throws IOException {
+        Path quarantinePath = resourceStorageService.getQuarantinePath();
+        Files.createDirectories(quarantinePath);
+        Path quarantined = quarantinePath.resolve(path.getFileName());
+        Files.move(path, quarantined, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        String contentPath = getContentPath(path);
+        if (isRecentlyModified(quarantined) || bookFileRepository.countByPath(contentPath) > 0) {
+            restore(quarantined, contentPath);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Возврат файла из карантина. Если загрузка уже восстановила файл в хранилище, копия из карантина удаляется.
+     */
+    private void restore(Path quarantined, String contentPath) throws IOException {
+        Path target = Paths.get(config.getDownloadPath(), contentPath);
+        if (Files.exists(target)) {
+            Files.deleteIfExists(quarantined);
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(quarantined, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Файл не используется: это незавершенная загрузка или на него нет ссылок,
+     * и он не изменялся дольше BOOK_FILE_ORPHAN_GRACE_PERIOD (загрузка сохраняет файл раньше записи BookFile)
+     */
+    private boolean isOrphan(Path path) throws IOException {
+        if (isRecentlyModified(path)) {
+            return false;
+        }
+        return isUploadTemp(path) || bookFileRepository.countByPath(getContentPath(path)) == 0;
+    }
+
+    private boolean isRecentlyModified(Path path) throws IOException {
+        return System.currentTimeMillis() - Files.getLastModifiedTime(path).toMillis() <
+                BookShopConfig.BOOK_FILE_ORPHAN_GRACE_PERIOD;
+    }
+
+    private boolean isUploadTemp(Path path) {
+        return path.getFileName().toString().endsWith(ResourceStorageService.UPLOAD_TEMP_SUFFIX);
+    }
+
+    private String getContentPath(Path path) {
+        return Paths.get(config.getDownloadPath()).relativize(path).toString().replace('\\', '/');
+    }
+
+    private boolean isIntact(Path path) throws IOException {
+        String checksum = resourceStorageService.getChecksum(path, BookShopConfig.BOOK_FILE_SCRUB_MAX_BYTES_PER_SEC);
+        return checksum.equals(path.getFileName().toString());
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.bookshopapp.service;
 
 import com.example.bookshopapp.api.dto.BookDto;
+import com.example.bookshopapp.api.dto.BookFileListDto;
 import com.example.bookshopapp.api.response.BookListResponse;
 import com.example.bookshopapp.api.response.ResultResponse;
 import com.example.bookshopapp.aspect.LoggingMethod;
@@ -11,8 +12,10 @@ import com.example.bookshopapp.exception.ViewNotFoundParameterException;
 import com.example.bookshopapp.exception.WrongParameterException;
 import com.example.bookshopapp.model.*;
 import com.example.bookshopapp.model.enums.BookStatus;
+import com.example.bookshopapp.model.enums.CoverVariant;
 import com.example.bookshopapp.repositories.Book2AuthorRepository;
 import com.example.bookshopapp.repositories.Book2UserRepository;
+import com.example.bookshopapp.repositories.BookFileTypeRepository;
 import com.example.bookshopapp.repositories.BookRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +24,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.time.LocalDate;
@@ -39,12 +43,15 @@ public class BookService {
     private final TagService tagService;
     private final GenreService genreService;
     private final AuthService authService;
+    private final CoverImageService coverImageService;
+    private final BookFileTypeRepository bookFileTypeRepository;
 
     @Autowired
     public BookService(BookRepository bookRepository, ResourceStorageService resourceStorageService,
                        Book2UserRepository book2UserRepository, Book2AuthorRepository book2AuthorRepository,
                        BooksRatingAndPopularityService booksRatingAndPopularityService, TagService tagService,
-                       GenreService genreService, AuthService authService) {
+                       GenreService genreService, AuthService authService, CoverImageService coverImageService,
+                       BookFileTypeRepository bookFileTypeRepository) {
         this.bookRepository = bookRepository;
         this.resourceStorageService = resourceStorageService;
         this.book2UserRepository = book2UserRepository;
@@ -53,6 +60,8 @@ public class BookService {
         this.tagService = tagService;
         this.genreService = genreService;
         this.authService = authService;
+        this.coverImageService = coverImageService;
+        this.bookFileTypeRepository = bookFileTypeRepository;
     }
 
     /**
@@ -116,6 +125,7 @@ public class BookService {
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfViewedBooks(Integer offset, Integer limit) {
         User user = authService.getCurrentUser();
         if (user == null) {
@@ -126,6 +136,7 @@ public class BookService {
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfRecentBooks(Integer offset, Integer limit, String fromDate, String toDate) {
         Pageable pageable = PageRequest.of(offset, limit,
                 Sort.by(BookShopConfig.SORT_PARAM_PUBLICATION_DATE).descending());
@@ -154,6 +165,7 @@ public class BookService {
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfPopularBooks(Integer offset, Integer limit) {
         Pageable pageable = PageRequest.of(offset, limit,
                 Sort.by(BookShopConfig.SORT_PARAM_POPULAR_INDEX).descending());
@@ -161,24 +173,28 @@ public class BookService {
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfSearchResultBook(Integer offset, Integer limit, String searchWord) {
         Pageable pageable = PageRequest.of(offset, limit);
         Page<Book> result = bookRepository.findAllByTitleContainingIgnoreCase(searchWord, pageable);
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfBooksByTagId(Integer offset, Integer limit, Integer id) {
         Pageable pageable = PageRequest.of(offset, limit);
         Page<Book> result = bookRepository.findAllByTagId(pageable, id);
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfBooksByTagSlug(Integer offset, Integer limit, String slug) {
         Pageable pageable = PageRequest.of(offset, limit);
         Page<Book> result = bookRepository.findAllByTagSlugName(pageable, slug);
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfBooksByGenreId(Integer offset, Integer limit, Integer id) {
         Pageable pageable = PageRequest.of(offset, limit,
                 Sort.by(BookShopConfig.SORT_PARAM_PUBLICATION_DATE).descending());
@@ -186,6 +202,7 @@ public class BookService {
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfBooksByGenreSlug(Integer offset, Integer limit, String slug) {
         Pageable pageable = PageRequest.of(offset, limit,
                 Sort.by(BookShopConfig.SORT_PARAM_PUBLICATION_DATE).descending());
@@ -193,6 +210,7 @@ public class BookService {
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfBooksByAuthorId(Integer offset, Integer limit, Integer id) {
         Pageable pageable = PageRequest.of(offset, limit,
                 Sort.by(BookShopConfig.SORT_PARAM_PUBLICATION_DATE).descending());
@@ -200,6 +218,7 @@ public class BookService {
         return new BookListResponse(getBooksDto(result.getContent()), result.getTotalElements());
     }
 
+    @LoggingMethod
     public BookListResponse getPageOfBooksByAuthorSlug(Integer offset, Integer limit, String slug) {
         Pageable pageable = PageRequest.of(offset, limit,
                 Sort.by(BookShopConfig.SORT_PARAM_PUBLICATION_DATE).descending());
@@ -255,6 +274,10 @@ public class BookService {
         return bookOptional.get();
     }
 
+    public List<Book> getBooksByIds(Collection<Integer> booksIds) {
+        return bookRepository.findAllById(booksIds);
+    }
+
     public List<Book> getBooksBySlugs(String[] slugs) {
         return bookRepository.findBooksBySlugIn(Arrays.asList(slugs));
     }
@@ -276,28 +299,50 @@ public class BookService {
         return book.get().getSlug();
     }
 
+    /**
+     * Метод добавляет файл книги, содержимое сохраняется в хранилище файлов книг без дублирования
+     *
+     * @param typeId - id типа файла
+     * @throws BookListWrongParameterException - книга или тип файла не найдены
+     */
+    public void addBookFile(MultipartFile file, String slug, Integer typeId)
+            throws BookListWrongParameterException, IOException {
+        Optional<Book> bookOpt = bookRepository.findBookBySlug(slug);
+        Optional<BookFileType> bookFileTypeOpt = bookFileTypeRepository.findById(typeId);
+        if (!bookOpt.isPresent() || !bookFileTypeOpt.isPresent()) {
+            log.warn("addBookFile (handling null value) slug:" + slug + " type:" + typeId);
+            throw new BookListWrongParameterException(LanguageMessage.EX_MSG_MISSING_RESULT);
+        }
+        BookFile bookFile = resourceStorageService.saveNewBookFile(file, bookOpt.get(), bookFileTypeOpt.get());
+        log.info("book file added: " + bookFile.getPath() + " book: " + slug);
+    }
+
     public void updateFileImage(String path, String slug) throws BookListWrongParameterException {
         Optional<Book> bookOpt = bookRepository.findBookBySlug(slug);
         if (!bookOpt.isPresent()) {
             log.warn("updateFileImage (handling null value) slug:" + slug);
             throw new BookListWrongParameterException(LanguageMessage.EX_MSG_MISSING_RESULT);
         }
-        bookOpt.get().setImage(path);
-        bookRepository.save(bookOpt.get());
+        Optional<Integer> imageVersion = bookRepository.replaceImage(bookOpt.get().getId(), path);
+        if (!imageVersion.isPresent()) {
+            log.warn("updateFileImage (book was deleted) slug:" + slug);
+            throw new BookListWrongParameterException(LanguageMessage.EX_MSG_MISSING_RESULT);
+        }
+        coverImageService.submitCoverVariants(bookOpt.get().getId(), path, imageVersion.get());
     }
 
     /**
      * Метод отправляет список файлов пользователя и проверяет, что книга для пользователя находится в статусе PAID
      * или ARCHIVED
+     * Ссылки на скачивание подписываются для пользователя, поэтому выдаются только для купленной книги
      *
      * @param bookId - id книги
      * @return ResultResponse(false) - если превышено количество скачиваний файлов
-     * BookFileListDto(true, EmptySet) - если файлы не найдены
+     * BookFileListDto(true, EmptySet) - если файлы не найдены или книга не куплена
      * BookFileListDto(true, Set) - в случае успешного выполнения
-     * @throws IOException             - ошибка чтения файла
      * @throws WrongParameterException - ошибка входных параметров
      */
-    public ResultResponse getBookFiles(Integer bookId) throws IOException, WrongParameterException {
+    public ResultResponse getBookFiles(Integer bookId) throws WrongParameterException {
         User user = authService.getCurrentUser();
         if (user == null) {
             return new ResultResponse(false);
@@ -306,10 +351,13 @@ public class BookService {
         if (!bookOpt.isPresent()) {
             throw new WrongParameterException(LanguageMessage.EX_MSG_MISSING_RESULT);
         }
-        if (!resourceStorageService.isAvailableFile(bookOpt.get(), user, false)) {
+        if (!resourceStorageService.isBookPaid(bookId, user.getId())) {
+            return new BookFileListDto(true, new TreeSet<>());
+        }
+        if (!resourceStorageService.isAvailableFile(bookId, user)) {
             return new ResultResponse(false);
         }
-        return resourceStorageService.getBooksFiles(bookOpt.get());
+        return resourceStorageService.getBooksFiles(bookOpt.get(), user);
     }
 
     public List<BookDto> getBooksDto(List<Book> books) {
@@ -324,7 +372,9 @@ public class BookService {
         return new BookDto(
                 book.getId(),
                 book.getSlug(),
-                book.getImage(),
+                coverImageService.getCoverImage(book, CoverVariant.DETAIL),
+                coverImageService.getCoverImage(book, CoverVariant.CARD),
+                coverImageService.getCoverImage(book, CoverVariant.THUMBNAIL),
                 getAuthorName(authorsSortedList),
                 getAuthorSlugName(authorsSortedList),
                 book.getTitle(),
@@ -354,12 +404,8 @@ public class BookService {
         if (user == null) {
             return "false";
         }
-        Optional<Book2User> book2Users = book2UserRepository
-                .getBook2UserByBookAndUserId(book.getId(), user.getId());
-        if (!book2Users.isPresent()) {
-            return "false";
-        }
-        return book2Users.get().getBook2UserType().getCode();
+        BookStatus bookStatus = booksRatingAndPopularityService.getBookStatus(book, user);
+        return bookStatus == null ? "false" : bookStatus.getStatus();
     }
 
     public static Integer getDiscountPrice(Integer price, Byte discount) {
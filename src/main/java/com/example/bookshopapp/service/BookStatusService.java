@@ -1,119 +1,282 @@
 package com.example.bookshopapp.service;
 
 import com.example.bookshopapp.api.dto.BookDto;
+import com.example.bookshopapp.api.dto.BookStatusChangeDto;
 import com.example.bookshopapp.config.BookShopConfig;
 import com.example.bookshopapp.config.LanguageMessage;
 import com.example.bookshopapp.exception.WrongParameterException;
 import com.example.bookshopapp.model.Book;
 import com.example.bookshopapp.model.Book2User;
-import com.example.bookshopapp.model.Book2UserType;
 import com.example.bookshopapp.model.User;
 import com.example.bookshopapp.model.compositekey.BookUserId;
 import com.example.bookshopapp.model.enums.BookStatus;
+import com.example.bookshopapp.model.enums.BookStatusChangeResult;
 import com.example.bookshopapp.repositories.Book2UserRepository;
-import com.example.bookshopapp.repositories.Book2UserTypeRepository;
+import com.example.bookshopapp.service.utils.BookCountersCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class BookStatusService {
+    private static final List<BookStatus> NOT_PAID_STATUSES = Arrays.asList(BookStatus.KEPT, BookStatus.CART);
+    private static final List<BookStatus> PAID_STATUSES = Arrays.asList(BookStatus.PAID, BookStatus.ARCHIVED);
+
     private final BookService bookService;
     private final CookieService cookieService;
     private final AuthService authService;
     private final Book2UserRepository book2UserRepository;
-    private final Book2UserTypeRepository book2UserTypeRepository;
+    private final Book2UserTypeService book2UserTypeService;
+    private final BookCountersCache bookCountersCache =
+            new BookCountersCache(BookShopConfig.BOOK_COUNTERS_CACHE_MAX_USERS,
+                    TimeUnit.SECONDS.toNanos(BookShopConfig.BOOK_COUNTERS_CACHE_TTL_SEC));
 
     @Autowired
     public BookStatusService(BookService bookService, CookieService cookieService, AuthService authService,
-                             Book2UserRepository book2UserRepository, Book2UserTypeRepository book2UserTypeRepository) {
+                             Book2UserRepository book2UserRepository, Book2UserTypeService book2UserTypeService) {
         this.bookService = bookService;
         this.cookieService = cookieService;
         this.authService = authService;
         this.book2UserRepository = book2UserRepository;
-        this.book2UserTypeRepository = book2UserTypeRepository;
+        this.book2UserTypeService = book2UserTypeService;
     }
 
     /**
      * Обработчик изменения статуса книги.
+     * Книги загружаются одним запросом по списку id. Если хотя бы одна книга не найдена, выбрасывается исключение
      * Проверяется, вошел пользователь или нет
      * Если пользователь вошел, то работа со статусами из базы данных
      * В противном случае обрабатываются cookie
      */
+    @Transactional
     public void handleChangeBookStatus(List<Integer> booksIds, String status,
                                        String cartContents, String postponedContents,
                                        HttpServletResponse response)
             throws WrongParameterException {
-        List<String> bookSlugs = new ArrayList<>();
-        for (Integer bookId : booksIds) {
-            bookSlugs.add(bookService.getSlugBook(bookId));
+        BookStatus bookStatus = BookStatus.valueOf(status);
+        Set<Integer> bookIdSet = new LinkedHashSet<>(booksIds);
+        List<Book> books = bookService.getBooksByIds(bookIdSet);
+        if (books.size() != bookIdSet.size()) {
+            log.warn("handleChangeBookStatus (handling null value) booksIds:" + booksIds);
+            throw new WrongParameterException(LanguageMessage.EX_MSG_MISSING_RESULT);
         }
-        User user = authService.getCurrentUser();
-        if (user == null) {
-            changeCookieBookStatus(bookSlugs, status, cartContents, postponedContents, response);
-        } else {
-            changeDataBaseBookStatus(user, bookSlugs, status);
+        changeBookStatus(books, bookStatus, cartContents, postponedContents, response);
+    }
+
+    /**
+     * Массовое изменение статуса книг.
+     * В отличие от handleChangeBookStatus не найденные книги не прерывают операцию, а попадают в результат
+     * со значением NOT_FOUND.
+     *
+     * @return результат изменения статуса для каждой переданной книги
+     */
+    @Transactional
+    public List<BookStatusChangeDto> handleChangeBookStatusBulk(List<Integer> booksIds, String status,
+                                                                String cartContents, String postponedContents,
+                                                                HttpServletResponse response)
+            throws WrongParameterException {
+        BookStatus bookStatus = BookStatus.valueOf(status);
+        Set<Integer> bookIdSet = new LinkedHashSet<>(booksIds);
+        List<Book> books = bookService.getBooksByIds(bookIdSet);
+        Map<Integer, BookStatusChangeResult> results =
+                changeBookStatus(books, bookStatus, cartContents, postponedContents, response);
+        List<BookStatusChangeDto> bookStatusChangeDtoList = new ArrayList<>();
+        for (Integer bookId : bookIdSet) {
+            bookStatusChangeDtoList.add(new BookStatusChangeDto(bookId,
+                    results.getOrDefault(bookId, BookStatusChangeResult.NOT_FOUND)));
         }
+        return bookStatusChangeDtoList;
     }
 
-    private void changeDataBaseBookStatus(User user, List<String> bookSlugs, String status)
+    private Map<Integer, BookStatusChangeResult> changeBookStatus(List<Book> books, BookStatus status,
+                                                                  String cartContents, String postponedContents,
+                                                                  HttpServletResponse response)
             throws WrongParameterException {
-        for (String slug : bookSlugs) {
-            Book book = bookService.getBookBySlug(slug);
-            if (BookStatus.valueOf(status).equals(BookStatus.KEPT) ||
-                    BookStatus.valueOf(status).equals(BookStatus.CART) ||
-                    BookStatus.valueOf(status).equals(BookStatus.UNLINK)) {
-                changeOrCreateBook2UserLink(user, book.getId(), BookStatus.valueOf(status));
+        User user = authService.getCurrentUser();
+        if (user != null) {
+            return changeDataBaseBookStatus(user, books.stream().map(Book::getId).collect(Collectors.toList()),
+                    status);
+        }
+        List<Integer> booksIds = books.stream().map(Book::getId).collect(Collectors.toList());
+        return changeCookieBookStatus(booksIds, status, cartContents, postponedContents, response);
+    }
+
+    /**
+     * Изменение связей между пользователем и книгами.
+     * Текущие связи читаются одним запросом, затем все изменения применяются одним пакетным запросом:
+     * INSERT ... ON CONFLICT UPDATE для KEPT и CART, UPDATE для PAID и ARCHIVED, DELETE для UNLINK.
+     * Связи со статусом PAID или ARCHIVED не могут быть изменены на KEPT, CART или UNLINK.
+     *
+     * @return результат изменения статуса для каждой книги
+     */
+    private Map<Integer, BookStatusChangeResult> changeDataBaseBookStatus(User user, List<Integer> booksIds,
+                                                                          BookStatus status) {
+        Map<Integer, BookStatusChangeResult> results = new HashMap<>();
+        if (booksIds.isEmpty()) {
+            return results;
+        }
+        Map<Integer, BookStatus> currentStatuses = new HashMap<>();
+        for (Book2User book2User : book2UserRepository.getBook2UsersByUserIdAndBookIds(user.getId(), booksIds)) {
+            currentStatuses.put(book2User.getBookUserId().getBookId(),
+                    book2UserTypeService.getBookStatus(book2User.getBook2UserType()));
+        }
+        List<Integer> changedBooksIds = new ArrayList<>();
+        for (Integer bookId : booksIds) {
+            BookStatusChangeResult result = getBookStatusChangeResult(currentStatuses.get(bookId), status);
+            results.put(bookId, result);
+            if (result.equals(BookStatusChangeResult.CREATED) || result.equals(BookStatusChangeResult.CHANGED) ||
+                    result.equals(BookStatusChangeResult.REMOVED)) {
+                changedBooksIds.add(bookId);
             }
-            if (BookStatus.valueOf(status).equals(BookStatus.PAID) ||
-                    BookStatus.valueOf(status).equals(BookStatus.ARCHIVED)) {
-                changePaidBook2UserLink(user, book.getId(), BookStatus.valueOf(status));
+        }
+        if (changedBooksIds.isEmpty()) {
+            return results;
+        }
+        switch (status) {
+            case UNLINK:
+                book2UserRepository.deleteBook2UserLinks(user.getId(), changedBooksIds,
+                        book2UserTypeService.getBook2UserTypeIds(NOT_PAID_STATUSES));
+                break;
+            case KEPT:
+            case CART:
+                book2UserRepository.upsertBook2UserLinks(user.getId(), changedBooksIds,
+                        book2UserTypeService.getBook2UserType(status).getId(), LocalDateTime.now(),
+                        book2UserTypeService.getBook2UserTypeIds(NOT_PAID_STATUSES));
+                break;
+            default:
+                book2UserRepository.updateBook2UserLinks(user.getId(), changedBooksIds,
+                        book2UserTypeService.getBook2UserType(status).getId(), LocalDateTime.now(),
+                        book2UserTypeService.getBook2UserTypeIds(PAID_STATUSES));
+        }
+        evictBookCounters(user);
+        log.info("BookService - change book to user links status: " + status + " for user id: " + user.getId() +
+                " books: " + changedBooksIds);
+        return results;
+    }
+
+    private BookStatusChangeResult getBookStatusChangeResult(BookStatus currentStatus, BookStatus newStatus) {
+        boolean isPaidCurrent = BookStatus.PAID.equals(currentStatus) || BookStatus.ARCHIVED.equals(currentStatus);
+        if (newStatus.equals(BookStatus.PAID) || newStatus.equals(BookStatus.ARCHIVED)) {
+            if (!isPaidCurrent) {
+                return BookStatusChangeResult.REJECTED;
             }
+            return newStatus.equals(currentStatus) ? BookStatusChangeResult.UNCHANGED : BookStatusChangeResult.CHANGED;
+        }
+        if (isPaidCurrent) {
+            return BookStatusChangeResult.REJECTED;
+        }
+        if (newStatus.equals(BookStatus.UNLINK)) {
+            return currentStatus == null ? BookStatusChangeResult.UNCHANGED : BookStatusChangeResult.REMOVED;
         }
+        if (currentStatus == null) {
+            return BookStatusChangeResult.CREATED;
+        }
+        return newStatus.equals(currentStatus) ? BookStatusChangeResult.UNCHANGED : BookStatusChangeResult.CHANGED;
     }
 
-    private void changeCookieBookStatus(List<String> bookSlugs, String status,
-                                        String cartContents, String postponedContents,
-                                        HttpServletResponse response) throws WrongParameterException {
-        switch (BookStatus.valueOf(status)) {
+    /**
+     * Изменение содержимого cookie корзины и отложенных книг
+     * Cookie всегда записываются в компактном формате, cookie старого формата при этом преобразуются
+     * Результат для каждой книги определяется по ее положению в cookie до изменения
+     * Если после изменения в cookie окажется больше BOOK_COOKIE_MAX_IDS книг, изменение отклоняется
+     *
+     * @return результат изменения статуса для каждой книги
+     */
+    private Map<Integer, BookStatusChangeResult> changeCookieBookStatus(List<Integer> booksIds, BookStatus status,
+                                                                        String cartContents, String postponedContents,
+                                                                        HttpServletResponse response)
+            throws WrongParameterException {
+        Set<Integer> cartBooksIds = getBooksIdsFromCookie(cartContents);
+        Set<Integer> postponedBooksIds = getBooksIdsFromCookie(postponedContents);
+        Map<Integer, BookStatusChangeResult> results = new HashMap<>();
+        for (Integer bookId : booksIds) {
+            BookStatus currentStatus = null;
+            if (cartBooksIds.contains(bookId)) {
+                currentStatus = BookStatus.CART;
+            } else if (postponedBooksIds.contains(bookId)) {
+                currentStatus = BookStatus.KEPT;
+            }
+            results.put(bookId, getBookStatusChangeResult(currentStatus, status));
+        }
+        switch (status) {
             case KEPT:
-                cookieService.addValueToCookieResponse(response, postponedContents,
-                        BookShopConfig.POSTPONED_COOKIE_NAME, bookSlugs);
-                cookieService.deleteValueFromCookieBooksResponse(response, cartContents,
-                        BookShopConfig.CART_COOKIE_NAME, bookSlugs);
+                postponedBooksIds.addAll(booksIds);
+                cartBooksIds.removeAll(booksIds);
                 break;
             case CART:
-                cookieService.addValueToCookieResponse(response, cartContents,
-                        BookShopConfig.CART_COOKIE_NAME, bookSlugs);
-                cookieService.deleteValueFromCookieBooksResponse(response, postponedContents,
-                        BookShopConfig.POSTPONED_COOKIE_NAME, bookSlugs);
+                cartBooksIds.addAll(booksIds);
+                postponedBooksIds.removeAll(booksIds);
                 break;
             case UNLINK:
-                cookieService.deleteValueFromCookieBooksResponse(response, cartContents,
-                        BookShopConfig.CART_COOKIE_NAME, bookSlugs);
-                cookieService.deleteValueFromCookieBooksResponse(response, postponedContents,
-                        BookShopConfig.POSTPONED_COOKIE_NAME, bookSlugs);
+                cartBooksIds.removeAll(booksIds);
+                postponedBooksIds.removeAll(booksIds);
                 break;
             default:
                 throw new WrongParameterException(LanguageMessage.EX_MSG_WRONG_PARAM);
         }
+        if (cartBooksIds.size() > BookShopConfig.BOOK_COOKIE_MAX_IDS ||
+                postponedBooksIds.size() > BookShopConfig.BOOK_COOKIE_MAX_IDS) {
+            log.warn("changeCookieBookStatus - cookie books limit exceeded, cart: " + cartBooksIds.size() +
+                    " postponed: " + postponedBooksIds.size());
+            throw new WrongParameterException(LanguageMessage.EX_MSG_COOKIE_BOOKS_LIMIT);
+        }
+        if (cartContents != null || !cartBooksIds.isEmpty()) {
+            cookieService.addBookIdsToCookieResponse(response, BookShopConfig.CART_COOKIE_NAME, cartBooksIds);
+        }
+        if (postponedContents != null || !postponedBooksIds.isEmpty()) {
+            cookieService.addBookIdsToCookieResponse(response, BookShopConfig.POSTPONED_COOKIE_NAME,
+                    postponedBooksIds);
+        }
+        return results;
+    }
+
+    /**
+     * Метод возвращает id книг из cookie
+     * Для cookie старого формата (slug книг через "/") id определяются по базе данных
+     */
+    private Set<Integer> getBooksIdsFromCookie(String contents) {
+        Set<Integer> booksIds = new TreeSet<>();
+        if (contents == null || contents.isEmpty()) {
+            return booksIds;
+        }
+        int[] ids = cookieService.getBookIdsByContents(contents);
+        if (ids == null) {
+            for (Book book : bookService.getBooksBySlugs(cookieService.getCookieValuesByContents(contents))) {
+                booksIds.add(book.getId());
+            }
+            return booksIds;
+        }
+        for (int id : ids) {
+            booksIds.add(id);
+        }
+        return booksIds;
+    }
+
+    /**
+     * Метод возвращает количество книг в cookie (корзина, отложенные) без загрузки книг из базы данных
+     */
+    public Integer getCountBooksFromCookie(String contents) {
+        int[] booksIds = cookieService.getBookIdsByContents(contents);
+        return booksIds != null ? booksIds.length : cookieService.countCookieValuesByContents(contents);
     }
 
     public List<BookDto> getBooksFromCookie(String contents) {
         if (contents == null || contents.isEmpty()) {
             return new ArrayList<>();
         }
-        return bookService.getBooksDtoBySlugs(cookieService.getCookieValuesByContents(contents));
+        return bookService.getBooksDto(bookService.getBooksByIds(getBooksIdsFromCookie(contents)));
     }
 
     /**
@@ -127,8 +290,7 @@ public class BookStatusService {
             throws WrongParameterException {
         Optional<Book2User> book2User = book2UserRepository.getBook2UserByBookAndUserId(bookId, user.getId());
         if (book2User.isPresent()) {
-            if (!book2User.get().getBook2UserType().getCode().equals(BookStatus.PAID.getStatus()) &&
-                    !book2User.get().getBook2UserType().getCode().equals(BookStatus.ARCHIVED.getStatus())) {
+            if (!book2UserTypeService.isPaid(book2User.get().getBook2UserType())) {
                 if (status.equals(BookStatus.UNLINK)) {
                     deleteBook2UserLink(book2User.get());
                     return;
@@ -141,20 +303,21 @@ public class BookStatusService {
     }
 
     /**
-     * Изменение связи между пользователем и книгой
-     * если тип связи и статус равен PAID или ARCHIVED
+     * Перевод книг из корзины пользователя в статус PAID одним запросом
+     * Книги, которые к этому моменту уже не находятся в корзине, не изменяются
+     *
+     * @return количество переведенных книг
      */
     @Transactional
-    public void changePaidBook2UserLink(User user, Integer bookId, BookStatus status) {
-        if (!status.equals(BookStatus.PAID) && !status.equals(BookStatus.ARCHIVED)) {
-            return;
-        }
-        Optional<Book2User> book2User = book2UserRepository.getBook2UserByBookAndUserId(bookId, user.getId());
-        if (book2User.isPresent() &&
-                (book2User.get().getBook2UserType().getCode().equals(BookStatus.PAID.getStatus()) ||
-                        book2User.get().getBook2UserType().getCode().equals(BookStatus.ARCHIVED.getStatus()))) {
-            changeBook2UserStatus(book2User.get(), status);
+    public int changeCartBooksToPaid(User user, Collection<Integer> booksIds) {
+        if (booksIds.isEmpty()) {
+            return 0;
         }
+        int count = book2UserRepository.updateBook2UserLinks(user.getId(), booksIds,
+                book2UserTypeService.getBook2UserType(BookStatus.PAID).getId(), LocalDateTime.now(),
+                book2UserTypeService.getBook2UserTypeIds(Collections.singletonList(BookStatus.CART)));
+        evictBookCounters(user);
+        return count;
     }
 
     /**
@@ -169,40 +332,69 @@ public class BookStatusService {
         Book2User book2User = new Book2User();
         book2User.setUser(user);
         book2User.setBook(bookService.getBookById(bookId));
-        book2User.setBook2UserType(getBook2UserTypeByStatus(status));
+        book2User.setBook2UserType(book2UserTypeService.getBook2UserType(status));
         book2User.setTime(LocalDateTime.now());
         book2User.setBookUserId(new BookUserId(user.getId(), bookId));
         book2UserRepository.save(book2User);
+        evictBookCounters(user);
         log.info("BookService - create book to user link status: " + status + " with id: " + book2User.getBookUserId());
     }
 
-    private Book2UserType getBook2UserTypeByStatus(BookStatus status){
-        Book2UserType book2UserType = new Book2UserType();
-        Optional<Book2UserType> book2UserTypeOptional =
-                book2UserTypeRepository.getBook2UserTypeByCode(status.getStatus());
-        if (book2UserTypeOptional.isPresent()) {
-            book2UserType = book2UserTypeOptional.get();
-        } else {
-            book2UserType.setCode(status.getStatus());
-            book2UserType.setName(status.getName());
-            book2UserType = book2UserTypeRepository.save(book2UserType);
+    public Integer getCountBooksFromDataBase(User user, BookStatus status) {
+        return getCountBooksFromDataBase(user).getOrDefault(status, 0);
+    }
+
+    /**
+     * Метод возвращает количество книг пользователя по статусам
+     * Значения берутся из кэша, при отсутствии в кэше загружаются из базы данных одним запросом
+     */
+    public Map<BookStatus, Integer> getCountBooksFromDataBase(User user) {
+        Map<BookStatus, Integer> counters = bookCountersCache.get(user.getId());
+        if (counters != null) {
+            return counters;
         }
-        return  book2UserType;
+        long generation = bookCountersCache.getGeneration(user.getId());
+        counters = new EnumMap<>(BookStatus.class);
+        for (Object[] row : book2UserRepository.countBook2UserByUserGroupByType(user.getId())) {
+            BookStatus status = book2UserTypeService.getBookStatus((Integer) row[0]);
+            if (status != null) {
+                counters.put(status, ((Number) row[1]).intValue());
+            }
+        }
+        counters = Collections.unmodifiableMap(counters);
+        bookCountersCache.put(user.getId(), counters, generation);
+        return counters;
     }
 
-    public Integer getCountBooksFromDataBase(User user, BookStatus status) {
-        return book2UserRepository.countBook2UserByUserAndStatusBook(user.getId(), status.getStatus());
+    /**
+     * Сброс счетчиков книг пользователя
+     * Если изменение выполняется в транзакции, счетчики сбрасываются после ее фиксации,
+     * чтобы параллельный запрос не успел загрузить в кэш незафиксированное состояние
+     */
+    private void evictBookCounters(User user) {
+        Integer userId = user.getId();
+        bookCountersCache.evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bookCountersCache.evict(userId);
+                }
+            });
+        }
     }
 
     public void deleteBook2UserLink(Book2User book2User) {
         book2UserRepository.delete(book2User);
+        evictBookCounters(book2User.getUser());
         log.info("BookService - delete book to user link with id: " + book2User.getBookUserId());
     }
 
     private void changeBook2UserStatus(Book2User book2User, BookStatus status) {
-        book2User.setBook2UserType(getBook2UserTypeByStatus(status));
+        book2User.setBook2UserType(book2UserTypeService.getBook2UserType(status));
         book2User.setTime(LocalDateTime.now());
         book2UserRepository.save(book2User);
+        evictBookCounters(book2User.getUser());
         log.info("BookService - change book to user link status: " + status + " with id: " + book2User.getBookUserId());
     }
 
@@ -226,8 +418,7 @@ public class BookStatusService {
     }
 
     private void moveBooksFromCookieToDB(Cookie cookie, BookStatus status, HttpServletResponse response) {
-        String[] slugs = cookieService.getCookieValuesByContents(cookie.getValue());
-        List<Book> bookList = bookService.getBooksBySlugs(slugs);
+        List<Book> bookList = bookService.getBooksByIds(getBooksIdsFromCookie(cookie.getValue()));
         User user = authService.getCurrentUser();
         for (Book book : bookList) {
             if (!book2UserRepository.getBook2UserByBookAndUserId(book.getId(), user.getId()).isPresent()) {
@@ -32,18 +32,21 @@ public class BooksRatingAndPopularityService {
     private final Book2UserRecentlyViewRepository book2UserRecentlyViewRepository;
     private final CookieService cookieService;
     private final AuthService authService;
+    private final Book2UserTypeService book2UserTypeService;
 
     @Autowired
     public BooksRatingAndPopularityService(BookRepository bookRepository, Book2UserRepository book2UserRepository,
                                            BookEvaluationRepository bookEvaluationRepository,
                                            Book2UserRecentlyViewRepository book2UserRecentlyViewRepository,
-                                           CookieService cookieService, AuthService authService) {
+                                           CookieService cookieService, AuthService authService,
+                                           Book2UserTypeService book2UserTypeService) {
         this.bookRepository = bookRepository;
         this.book2UserRepository = book2UserRepository;
         this.bookEvaluationRepository = bookEvaluationRepository;
         this.book2UserRecentlyViewRepository = book2UserRecentlyViewRepository;
         this.cookieService = cookieService;
         this.authService = authService;
+        this.book2UserTypeService = book2UserTypeService;
     }
 
     @Scheduled(cron = BookShopConfig.BOOK_UPDATE_FREQUENCY)
@@ -172,7 +175,7 @@ public class BooksRatingAndPopularityService {
      */
     public BookStatus getBookStatus(Book book, User user){
         Optional<Book2User> book2User = book2UserRepository.getBook2UserByUserAndBook(user, book);
-        return book2User.map(value -> BookStatus.valueOf(value.getBook2UserType().getCode())).orElse(null);
+        return book2User.map(value -> book2UserTypeService.getBookStatus(value.getBook2UserType())).orElse(null);
     }
 
     public Set<Book> getViewedBooksByUser(User user){
@@ -0,0 +1,62 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.config.LanguageMessage;
+import com.example.bookshopapp.exception.RateLimitException;
+import com.example.bookshopapp.service.utils.TokenBucketRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bookshopapp.config.BookShopConfig.RATE_LIMIT_MAX_KEYS_PER_STRIPE;
+import static com.example.bookshopapp.config.BookShopConfig.RATE_LIMIT_STRIPES;
+
+/**
+ * Ограничение частоты запросов кода подтверждения.
+ * Запросы ограничиваются в памяти по контакту и по IP адресу клиента до обращения к базе данных и
+ * к сервисам отправки SMS и E-mail. Параметры лимитов задаются в BookShopConfig.
+ */
+@Service
+@Slf4j
+public class ConfirmationRateLimitService {
+    private final TokenBucketRateLimiter contactLimiter;
+    private final TokenBucketRateLimiter ipLimiter;
+
+    @Autowired
+    public ConfirmationRateLimitService(BookShopConfig config) {
+        contactLimiter = new TokenBucketRateLimiter(config.getRateLimitContactCapacity(),
+                TimeUnit.SECONDS.toNanos(config.getRateLimitContactRefillSec()),
+                RATE_LIMIT_STRIPES, RATE_LIMIT_MAX_KEYS_PER_STRIPE);
+        ipLimiter = new TokenBucketRateLimiter(config.getRateLimitIpCapacity(),
+                TimeUnit.SECONDS.toNanos(config.getRateLimitIpRefillSec()),
+                RATE_LIMIT_STRIPES, RATE_LIMIT_MAX_KEYS_PER_STRIPE);
+    }
+
+    /**
+     * Метод проверяет лимит запросов кода подтверждения. Сначала проверяется лимит IP адреса, затем лимит контакта
+     *
+     * @param contact  - строка Email или телефон
+     * @param clientIp - IP адрес клиента
+     * @throws RateLimitException - лимит исчерпан (сообщение на установленном языке отправляется пользователю)
+     */
+    public void checkCodeRequest(String contact, String clientIp) throws RateLimitException {
+        long now = System.nanoTime();
+        if (clientIp != null && !ipLimiter.tryAcquire(clientIp, now)) {
+            log.warn("checkCodeRequest - the limit of code requests from ip " + clientIp + " is exceeded");
+            throw new RateLimitException(LanguageMessage
+                    .getExMsgTooManyRequests(ipLimiter.secondsToNextToken(clientIp, now)));
+        }
+        String contactKey = normalizeContact(contact);
+        if (!contactLimiter.tryAcquire(contactKey, now)) {
+            log.warn("checkCodeRequest - the limit of code requests for contact " + contactKey + " is exceeded");
+            throw new RateLimitException(LanguageMessage
+                    .getExMsgTooManyRequests(contactLimiter.secondsToNextToken(contactKey, now)));
+        }
+    }
+
+    private String normalizeContact(String contact) {
+        return contact.replaceAll("[+( )-]", "").toLowerCase();
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.bookshopapp.service;
 
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.service.utils.BookIdsCookieCodec;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.http.Cookie;
@@ -9,6 +12,13 @@ import java.util.*;
 
 @Service
 public class CookieService {
+    private final BookIdsCookieCodec bookIdsCookieCodec;
+
+    @Autowired
+    public CookieService(BookShopConfig config) {
+        this.bookIdsCookieCodec = new BookIdsCookieCodec(config.getCookieSecret(),
+                BookShopConfig.BOOK_COOKIE_MAX_IDS);
+    }
 
     public String[] getCookieValuesByContents(String contents) {
         contents = contents.startsWith("/") ? contents.substring(1) : contents;
@@ -16,6 +26,22 @@ public class CookieService {
         return contents.split("/");
     }
 
+    /**
+     * Метод считает количество различных непустых значений в cookie без обращения к базе данных
+     */
+    public int countCookieValuesByContents(String contents) {
+        if (contents == null || contents.isEmpty()) {
+            return 0;
+        }
+        Set<String> values = new HashSet<>();
+        for (String value : getCookieValuesByContents(contents)) {
+            if (!value.isEmpty()) {
+                values.add(value);
+            }
+        }
+        return values.size();
+    }
+
     public void addValueToCookieResponse(HttpServletResponse response, String contents,
                                          String contentsName, String contentAddValue) {
         addValueToCookieResponse(response, contents, contentsName, Collections.singletonList(contentAddValue));
@@ -28,30 +54,36 @@ public class CookieService {
             cookie.setPath("/");
             response.addCookie(cookie);
         } else {
-            StringJoiner stringJoiner = new StringJoiner("/");
-            stringJoiner.add(contents);
-            for (String value : contentsAddValue) {
-                if (!contents.contains(value)) {
-                    stringJoiner.add(value);
-                }
-            }
-            Cookie cookie = new Cookie(contentsName, stringJoiner.toString());
+            Set<String> values = new LinkedHashSet<>(Arrays.asList(getCookieValuesByContents(contents)));
+            values.addAll(contentsAddValue);
+            Cookie cookie = new Cookie(contentsName, String.join("/", values));
             cookie.setPath("/");
             response.addCookie(cookie);
         }
     }
 
-    public void deleteValueFromCookieBooksResponse(HttpServletResponse response, String contents,
-                                                   String contentsName, List<String> contentsRemoveValue) {
-        if (contents != null && !contents.isEmpty()) {
-            ArrayList<String> cookieBooks = new ArrayList<>(Arrays.asList(contents.split("/")));
-            for (String value : contentsRemoveValue) {
-                cookieBooks.remove(value);
-            }
-            Cookie cookie = new Cookie(contentsName, String.join("/", cookieBooks));
-            cookie.setPath("/");
-            response.addCookie(cookie);
+    /**
+     * Метод возвращает id книг из cookie корзины или отложенных книг
+     *
+     * @return отсортированные id книг; null, если cookie записана в старом формате (slug книг через "/")
+     */
+    public int[] getBookIdsByContents(String contents) {
+        return bookIdsCookieCodec.decode(contents);
+    }
+
+    /**
+     * Метод записывает id книг в cookie в компактном подписанном формате
+     */
+    public void addBookIdsToCookieResponse(HttpServletResponse response, String contentsName,
+                                           Collection<Integer> booksIds) {
+        int[] ids = new int[booksIds.size()];
+        int i = 0;
+        for (Integer bookId : booksIds) {
+            ids[i++] = bookId;
         }
+        Cookie cookie = new Cookie(contentsName, bookIdsCookieCodec.encode(ids));
+        cookie.setPath("/");
+        response.addCookie(cookie);
     }
 
     public static void deleteCookieByName(HttpServletRequest request, String name) {
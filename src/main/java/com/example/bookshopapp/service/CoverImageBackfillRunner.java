@@ -0,0 +1,31 @@
+package com.example.bookshopapp.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Создание вариантов для ранее загруженных обложек.
+ * Запускается при старте приложения с параметром --backfill-covers
+ */
+@Component
+@Slf4j
+public class CoverImageBackfillRunner implements ApplicationRunner {
+    public static final String BACKFILL_COVERS_OPTION = "backfill-covers";
+    private final CoverImageService coverImageService;
+
+    @Autowired
+    public CoverImageBackfillRunner(CoverImageService coverImageService) {
+        this.coverImageService = coverImageService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption(BACKFILL_COVERS_OPTION)) {
+            log.info("Cover variants backfill started");
+            coverImageService.backfillCoverVariants();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.model.Book;
+import com.example.bookshopapp.model.enums.CoverVariant;
+import com.example.bookshopapp.repositories.BookRepository;
+import com.example.bookshopapp.service.utils.CoverImageResizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static com.example.bookshopapp.config.BookShopConfig.BOOK_COVERS_URI;
+
+/**
+ * Создание уменьшенных вариантов обложек книг (CoverVariant).
+ * Варианты создаются в фоне на пуле из COVER_IMAGE_THREADS потоков с очередью COVER_IMAGE_QUEUE_CAPACITY задач,
+ * при заполнении очереди задача выполняется в вызывающем потоке. Файлы вариантов называются по хэшу содержимого
+ * исходной обложки, поэтому их можно кэшировать в браузере без ограничения срока.
+ * Пока варианты не созданы, вместо них используется исходная обложка. Обложки больше COVER_IMAGE_MAX_PIXELS
+ * не декодируются, и для них остается исходная обложка.
+ * Каждая загрузка обложки получает номер (imageVersion): хэш сохраняется только если с начала создания
+ * вариантов обложка не была загружена заново, даже если путь к ней не изменился.
+ */
+@Service
+@Slf4j
+public class CoverImageService {
+    private static final String VARIANT_EXTENSION = ".jpg";
+    private final BookRepository bookRepository;
+    private final ResourceStorageService resourceStorageService;
+    private final BookShopConfig config;
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    @Autowired
+    public CoverImageService(BookRepository bookRepository, ResourceStorageService resourceStorageService,
+                             BookShopConfig config) {
+        this.bookRepository = bookRepository;
+        this.resourceStorageService = resourceStorageService;
+        this.config = config;
+        executor.setCorePoolSize(BookShopConfig.COVER_IMAGE_THREADS);
+        executor.setMaxPoolSize(BookShopConfig.COVER_IMAGE_THREADS);
+        executor.setQueueCapacity(BookShopConfig.COVER_IMAGE_QUEUE_CAPACITY);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("cover-image-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Метод возвращает адрес варианта обложки книги или исходной обложки, если варианты еще не созданы
+     */
+    public String getCoverImage(Book book, CoverVariant variant) {
+        if (book.getImageHash() == null) {
+            return book.getImage();
+        }
+        return BOOK_COVERS_URI + getVariantFileName(book.getImageHash(), variant);
+    }
+
+    /**
+     * Метод ставит в очередь создание вариантов обложки
+     *
+     * @param image        - адрес исходной обложки
+     * @param imageVersion - номер загрузки обложки, для которой создаются варианты
+     * @return true - варианты созданы и сохранены для книги
+     */
+    public CompletableFuture<Boolean> submitCoverVariants(Integer bookId, String image, int imageVersion) {
+        return CompletableFuture.supplyAsync(() -> generateCoverVariants(bookId, image, imageVersion), executor);
+    }
+
+    /**
+     * Метод создает варианты для всех загруженных обложек, у которых их еще нет.
+     * Книги выбираются страницами по COVER_IMAGE_BACKFILL_PAGE_SIZE, следующая страница выбирается после обработки
+     * текущей.
+     *
+     * @return количество книг, для которых созданы варианты обложки
+     */
+    public int backfillCoverVariants() {
+        int generated = 0;
+        int afterId = 0;
+        List<Book> books;
+        do {
+            books = bookRepository.findBooksWithoutCoverVariants(BOOK_COVERS_URI + "%", afterId,
+                    PageRequest.of(0, BookShopConfig.COVER_IMAGE_BACKFILL_PAGE_SIZE));
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (Book book : books) {
+                results.add(submitCoverVariants(book.getId(), book.getImage(), book.getImageVersion()));
+                afterId = book.getId();
+            }
+            for (CompletableFuture<Boolean> result : results) {
+                if (Boolean.TRUE.equals(result.join())) {
+                    generated++;
+                }
+            }
+        } while (books.size() == BookShopConfig.COVER_IMAGE_BACKFILL_PAGE_SIZE);
+        log.info("Cover variants backfill completed. Generated: " + generated);
+        return generated;
+    }
+
+    private boolean generateCoverVariants(Integer bookId, String image, int imageVersion) {
+        if (image == null || !image.startsWith(BOOK_COVERS_URI)) {
+            log.warn("Cover is not stored locally, book id: " + bookId + " image: " + image);
+            return false;
+        }
+        Path uploadPath = Paths.get(config.getUploadPath());
+        Path original = uploadPath.resolve(image.substring(BOOK_COVERS_URI.length()));
+        try {
+            String hash = resourceStorageService.getChecksum(original);
+            if (!isCoverVariantsExist(uploadPath, hash)) {
+                BufferedImage source = CoverImageResizer.read(original.toFile(),
+                        BookShopConfig.COVER_IMAGE_MAX_PIXELS);
+                if (source == null) {
+                    log.warn("Cover image format is not supported: " + original);
+                    return false;
+                }
+                for (CoverVariant variant : CoverVariant.values()) {
+                    writeCoverVariant(source, variant, uploadPath, hash);
+                }
+            }
+            if (bookRepository.updateImageHash(bookId, imageVersion, hash) == 0) {
+                log.info("Cover was changed while generating variants, book id: " + bookId);
+                return false;
+            }
+            log.info("Cover variants generated for book id: " + bookId + " hash: " + hash);
+            return true;
+        } catch (IOException ex) {
+            log.warn("Cover variants not generated for book id: " + bookId + " " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isCoverVariantsExist(Path uploadPath, String hash) {
+        for (CoverVariant variant : CoverVariant.values()) {
+            if (!Files.exists(uploadPath.resolve(getVariantFileName(hash, variant)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Вариант записывается во временный файл и переименовывается, чтобы по адресу варианта
+     * никогда не отдавался частично записанный файл
+     */
+    private void writeCoverVariant(BufferedImage source, CoverVariant variant, Path uploadPath, String hash)
+            throws IOException {
+        BufferedImage resized = CoverImageResizer.resize(source, variant.getWidth(), variant.getHeight());
+        Path temp = Files.createTempFile(uploadPath, hash, VARIANT_EXTENSION);
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temp)) {
+                CoverImageResizer.writeJpeg(resized, BookShopConfig.COVER_IMAGE_JPEG_QUALITY, outputStream);
+            }
+            Files.move(temp, uploadPath.resolve(getVariantFileName(hash, variant)),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String getVariantFileName(String hash, CoverVariant variant) {
+        return hash + "-" + variant.getName() + VARIANT_EXTENSION;
+    }
+}
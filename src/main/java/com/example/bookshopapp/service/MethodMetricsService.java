@@ -0,0 +1,79 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.api.dto.MethodMetricsDto;
+import com.example.bookshopapp.service.utils.LatencyHistogram;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика вызовов методов, отмеченных аннотацией LoggingMethod: гистограмма времени выполнения
+ * и количество SQL запросов за вызов. Статистика метода создается при первом вызове и хранится
+ * до остановки приложения.
+ */
+@Service
+public class MethodMetricsService {
+    private final Map<Method, MethodMetrics> metricsByMethod = new ConcurrentHashMap<>();
+
+    /**
+     * Метод добавляет измерение одного вызова
+     *
+     * @param nanos   - время выполнения в наносекундах
+     * @param queries - количество SQL запросов за вызов
+     */
+    public void record(Method method, long nanos, long queries) {
+        MethodMetrics metrics = metricsByMethod.get(method);
+        if (metrics == null) {
+            metrics = metricsByMethod.computeIfAbsent(method, MethodMetrics::new);
+        }
+        metrics.histogram.record(nanos);
+        metrics.queries.add(queries);
+        long max = metrics.maxQueries.get();
+        while (queries > max && !metrics.maxQueries.compareAndSet(max, queries)) {
+            max = metrics.maxQueries.get();
+        }
+    }
+
+    /**
+     * Метод возвращает статистику по всем методам, время в микросекундах
+     */
+    public List<MethodMetricsDto> getMethodMetrics() {
+        List<MethodMetricsDto> result = new ArrayList<>();
+        for (MethodMetrics metrics : metricsByMethod.values()) {
+            LatencyHistogram.Snapshot snapshot = metrics.histogram.getSnapshot();
+            result.add(new MethodMetricsDto(metrics.name, snapshot.getCount(),
+                    toMicros(snapshot.getMeanNanos()),
+                    toMicros(snapshot.getPercentileNanos(50)),
+                    toMicros(snapshot.getPercentileNanos(90)),
+                    toMicros(snapshot.getPercentileNanos(99)),
+                    toMicros(snapshot.getMaxNanos()),
+                    snapshot.getCount() == 0 ? 0 : (double) metrics.queries.sum() / snapshot.getCount(),
+                    metrics.maxQueries.get()));
+        }
+        result.sort(Comparator.comparing(MethodMetricsDto::getMethod));
+        return result;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static class MethodMetrics {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder queries = new LongAdder();
+        private final AtomicLong maxQueries = new AtomicLong();
+
+        private MethodMetrics(Method method) {
+            name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.bookshopapp.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import static com.example.bookshopapp.config.BookShopConfig.DELAY_PAYMENT_CONFIRMATION;
+
+/**
+ * Периодическая проверка платежей, ожидающих подтверждения
+ * Частота запусков определяется параметром DELAY_PAYMENT_CONFIRMATION, следующий запуск начинается только после
+ * завершения предыдущего. Очередь платежей хранится в базе данных, поэтому проверка на всех узлах приложения
+ * работает одинаково и не зависит от сессий пользователей.
+ */
+@Service
+public class PaymentConfirmationWorker {
+    private final PaymentService paymentService;
+
+    @Autowired
+    public PaymentConfirmationWorker(PaymentService paymentService) {
+        this.paymentService = paymentService;
+    }
+
+    @Scheduled(fixedDelay = DELAY_PAYMENT_CONFIRMATION)
+    public void confirmPayments() {
+        paymentService.confirmDuePayments();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.service.utils.ExpiringDedupCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.example.bookshopapp.config.BookShopConfig.PAYMENT_REQUEST_CACHE_MAX_SIZE;
+import static com.example.bookshopapp.config.BookShopConfig.TIME_CACHING_PAYMENT_REQUEST_SEC;
+
+/**
+ * Общий для всех пользователей кэш запросов на оплату
+ * Повторные нажатия кнопки оплаты одним пользователем на ту же сумму в течение TIME_CACHING_PAYMENT_REQUEST_SEC
+ * объединяются в один запрос к платежной системе и получают одну ссылку на оплату.
+ */
+@Service
+@Slf4j
+public class PaymentRequestCache {
+    private final ExpiringDedupCache<String, String> cache = new ExpiringDedupCache<>(
+            TimeUnit.SECONDS.toNanos(TIME_CACHING_PAYMENT_REQUEST_SEC), PAYMENT_REQUEST_CACHE_MAX_SIZE);
+
+    /**
+     * Метод возвращает ссылку на оплату из кэша или создает платеж
+     *
+     * @param userHash    - hash пользователя
+     * @param sum         - сумма оплаты
+     * @param redirectURI - адрес возврата после оплаты
+     * @param loader      - создание платежа в платежной системе
+     */
+    public CompletableFuture<String> getPaymentUri(String userHash, String sum, String redirectURI,
+                                                   Supplier<CompletableFuture<String>> loader) {
+        boolean[] isLoaded = {false};
+        CompletableFuture<String> paymentUri = cache.getOrLoad(userHash + ":" + sum + ":" + redirectURI, () -> {
+            isLoaded[0] = true;
+            return loader.get();
+        });
+        if (!isLoaded[0]) {
+            log.info("Duplicate payment request merged for user: " + userHash + " sum: " + sum +
+                    " (dedup hits: " + cache.getHits() + ", misses: " + cache.getMisses() + ")");
+        }
+        return paymentUri;
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+}
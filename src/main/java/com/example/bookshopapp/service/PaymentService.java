@@ -1,8 +1,15 @@
 package com.example.bookshopapp.service;
 
 import com.example.bookshopapp.api.request.PayRequest;
+import com.example.bookshopapp.api.request.payment.PaymentNotificationRequest;
 import com.example.bookshopapp.exception.PaymentException;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface PaymentService {
-    String topUpAccountBalance(PayRequest payRequest, String redirectURI) throws PaymentException;
+    CompletableFuture<String> topUpAccountBalance(PayRequest payRequest, String redirectURI);
+
+    void handlePaymentNotification(PaymentNotificationRequest notification) throws PaymentException;
+
+    void confirmDuePayments();
 }
\ No newline at end of file
@@ -3,13 +3,14 @@ package com.example.bookshopapp.service;
 import com.example.bookshopapp.api.dto.payment.Amount;
 import com.example.bookshopapp.api.dto.payment.Confirmation;
 import com.example.bookshopapp.api.request.PayRequest;
+import com.example.bookshopapp.api.request.payment.PaymentNotificationRequest;
 import com.example.bookshopapp.api.request.payment.PaymentRequest;
 import com.example.bookshopapp.api.response.payment.PaymentResponse;
-import com.example.bookshopapp.aspect.ValidateParamsRest;
 import com.example.bookshopapp.config.BookShopConfig;
 import com.example.bookshopapp.config.LanguageMessage;
 import com.example.bookshopapp.exception.PaymentException;
 import com.example.bookshopapp.exception.TransactionalException;
+import com.example.bookshopapp.exception.WrongParameterException;
 import com.example.bookshopapp.model.BalanceTransaction;
 import com.example.bookshopapp.model.User;
 import com.example.bookshopapp.model.YooCashOperation;
@@ -18,37 +19,33 @@ import com.example.bookshopapp.repositories.UserRepository;
 import com.example.bookshopapp.repositories.YooCashOperationRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.Random;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static com.example.bookshopapp.config.BookShopConfig.*;
 import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_PAYMENT_SERVICE_ERROR;
 import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_USER_NOT_FOUND;
-import static org.springframework.transaction.annotation.Isolation.SERIALIZABLE;
-import static org.springframework.web.context.WebApplicationContext.SCOPE_SESSION;
+import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_WRONG_PARAM;
 
 @Service
 @Slf4j
-@Scope(value = SCOPE_SESSION)
 public class PaymentServiceYooCashImpl implements PaymentService {
     public static final String STATUS_PENDING = "pending";
     public static final String STATUS_SUCCEEDED = "succeeded";
@@ -62,22 +59,23 @@ public class PaymentServiceYooCashImpl implements PaymentService {
     private final YooCashOperationRepository yooCashOperationRepository;
 
     private final BookShopConfig config;
-    private static final Random random = new Random();
-    private final CachingPayment cachingPayment;
-    private final ConcurrentLinkedQueue<String> confirmationPaidQueue;
+    private final PaymentRequestCache paymentRequestCache;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     public PaymentServiceYooCashImpl(AuthService authService, UserRepository userRepository,
                                      BalanceTransactionRepository balanceTransactionRepository, WebClient webClient,
-                                     YooCashOperationRepository yooCashOperationRepository, BookShopConfig config) {
+                                     YooCashOperationRepository yooCashOperationRepository, BookShopConfig config,
+                                     PlatformTransactionManager transactionManager,
+                                     PaymentRequestCache paymentRequestCache) {
         this.authService = authService;
         this.userRepository = userRepository;
         this.balanceTransactionRepository = balanceTransactionRepository;
         this.webClient = webClient;
         this.yooCashOperationRepository = yooCashOperationRepository;
         this.config = config;
-        cachingPayment = new CachingPayment();
-        confirmationPaidQueue = new ConcurrentLinkedQueue<>();
+        this.paymentRequestCache = paymentRequestCache;
+        transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -85,108 +83,160 @@ public class PaymentServiceYooCashImpl implements PaymentService {
      * Метод обеспечивает идемпотентность в течение времени, установленного в
      * TIME_CACHING_PAYMENT_REQUEST_SEC (в секундах)
      * Запрос на оплату сохраняется в базе данных со статусом Pending
-     * Метод выполняется в асинхронном режиме. Входящий запрос с результатом ответа сохраняется в HashMap.
-     * Во время выполнения метода проверяется аналогичный запрос в HashMap в течении установленного времени,
-     * если запрос найден, возвращается кешируемый результат.
+     * Повторные и одновременные запросы пользователя на ту же сумму объединяются в общем кэше PaymentRequestCache
+     * и получают результат первого запроса.
+     * Метод не блокирует вызывающий поток: запрос в платежную систему выполняется неблокирующим WebClient,
+     * результат возвращается после ответа платежной системы. Ошибки (PaymentException, WrongParameterException,
+     * UsernameNotFoundException) также передаются через результат.
      *
      * @param payRequest параметры запроса
      * @return URI перенаправления на платежную систему
      */
-    public String topUpAccountBalance(PayRequest payRequest, String redirectURI) throws PaymentException {
+    public CompletableFuture<String> topUpAccountBalance(PayRequest payRequest, String redirectURI) {
+        if (payRequest == null || payRequest.getHash() == null || payRequest.getSum() == null ||
+                payRequest.getSum().isEmpty() || payRequest.getTime() == null || payRequest.getTime() <= 0 ||
+                redirectURI == null || redirectURI.isEmpty()) {
+            return getFailedFuture(new WrongParameterException(EX_MSG_WRONG_PARAM));
+        }
+        User user = authService.getCurrentUser();
+        if (user == null || !user.getHash().equals(payRequest.getHash())) {
+            return getFailedFuture(new UsernameNotFoundException(EX_MSG_USER_NOT_FOUND));
+        }
         payRequest.setSum(payRequest.getSum() + ".00");
-        if (cachingPayment.isExist(payRequest)) {
-            String uri;
-            try {
-                uri = cachingPayment.getValue(payRequest);
-            } catch (InterruptedException | ExecutionException e) {
-                Thread.currentThread().interrupt();
-                throw new PaymentException(EX_MSG_PAYMENT_SERVICE_ERROR);
-            }
-            log.info("RETURN CACHING PAYMENT URI:" + uri);
-            return uri;
+        return paymentRequestCache.getPaymentUri(payRequest.getHash(), payRequest.getSum(), redirectURI,
+                () -> createPayment(user, payRequest.getSum(), payRequest.getTime(), redirectURI));
+    }
+
+    /**
+     * Обработка уведомления платежной системы (webhook)
+     * Содержимое уведомления не считается достоверным: по идентификатору платежа из уведомления статус
+     * запрашивается в платежной системе, после чего применяется та же логика, что и при опросе.
+     * Повторные уведомления по уже обработанному платежу ничего не изменяют.
+     *
+     * @throws PaymentException уведомление некорректно или платежная система недоступна,
+     *                          в этом случае платежная система повторит уведомление
+     */
+    public void handlePaymentNotification(PaymentNotificationRequest notification) throws PaymentException {
+        if (notification == null || notification.getObject() == null || notification.getObject().getId() == null) {
+            throw new PaymentException(EX_MSG_WRONG_PARAM);
+        }
+        String operationId = notification.getObject().getId();
+        if (!yooCashOperationRepository.findByOperationId(operationId).isPresent()) {
+            log.warn("Payment notification for unknown payment id: " + operationId);
+            return;
         }
-        CompletableFuture<String> completableFuture = new CompletableFuture<>();
-        cachingPayment.add(payRequest, completableFuture);
-        completableFuture = topUpAccountBalanceAsync(payRequest.getHash(),
-                payRequest.getSum(), payRequest.getTime(), completableFuture, redirectURI);
-        CompletableFuture.allOf(completableFuture).join();
-        try {
-            return completableFuture.get();
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
+        PaymentResponse response = sendPaymentConfirmationRequestForYooCash(operationId).block();
+        if (response == null || !operationId.equals(response.getId())) {
             throw new PaymentException(EX_MSG_PAYMENT_SERVICE_ERROR);
         }
+        log.info("Payment notification " + notification.getEvent() + " for id: " + operationId +
+                " confirmed status: " + response.getStatus());
+        transactionTemplate.execute(status -> {
+            processingPaymentTransaction(response);
+            return null;
+        });
     }
 
     /**
-     * Метод получает подтверждение платежа путем периодических запросов, частота которых определяется
-     * параметром DELAY_PAYMENT_CONFIRMATION. Идентификаторы платежей, по которым необходимо получить подтверждение,
-     * хранятся в очереди. Метод последовательно извлекает платежи из очереди и отправляет запрос в платежную систему
-     * о состоянии платежа. После получения ответа из платежной системы, изменяется статус платежа в таблице Ю Касса,
-     * а так же сохраняется результат транзакции и обновляется баланс пользователя.
-     *
-     * @throws TransactionalException происходит откат операции
+     * Проверка платежей, ожидающих подтверждения (резервный механизм на случай потери уведомлений платежной системы)
+     * Очередь платежей хранится в таблице Ю Касса: платежи в статусе pending с наступившим временем next_check_at.
+     * За один запуск из базы данных забирается не более PAYMENT_CONFIRMATION_BATCH_SIZE платежей
+     * (FOR UPDATE SKIP LOCKED), поэтому несколько узлов приложения могут обрабатывать очередь одновременно.
+     * Для каждого забранного платежа сразу назначается следующая проверка с экспоненциальной задержкой,
+     * поэтому платеж, проверка которого не завершилась, будет забран повторно не раньше этого времени.
+     * Запросы о состоянии платежей отправляются в платежную систему параллельно через неблокирующий WebClient,
+     * число одновременных запросов ограничено параметром paymentConfirmationConcurrency.
+     * Результат каждого платежа применяется по мере получения в отдельной короткой транзакции.
+     * Ошибка обработки одного платежа не прерывает пакет: она записывается в лог, а платеж будет проверен
+     * повторно в назначенное при забирании время.
      */
-    @Scheduled(fixedDelay = DELAY_PAYMENT_CONFIRMATION)
-    @Transactional(isolation = SERIALIZABLE, propagation = Propagation.REQUIRES_NEW)
-    public void getPaymentConfirmation() throws TransactionalException {
-        while (!confirmationPaidQueue.isEmpty()) {
-            String currentId = confirmationPaidQueue.peek();
-            Optional<YooCashOperation> yooCashOperation = yooCashOperationRepository.findByOperationId(currentId);
-            if (!yooCashOperation.isPresent()) {
-                log.error("There is no record of payment in the database with id: " + currentId +
-                        " The missing record has been removed from the payment processing queue");
-                confirmationPaidQueue.remove(currentId);
-                continue;
-            }
-            PaymentResponse response = sendPaymentConfirmationRequestForYooCash(currentId);
-            if (response == null) {
-                log.error("Invalid response from the payment system server. Payment id" + currentId +
-                        " The missing record has been removed from the payment processing queue");
-                confirmationPaidQueue.remove(currentId);
-                continue;
-            }
-            if (response.getStatus().equals(STATUS_PENDING)) {
-                continue;
-            }
-            if (response.getStatus().equals(STATUS_WAITING)) {
-                log.warn("Payment system parameters are incorrectly configured. Payments are transferred to the " +
-                        "status of waiting_for_capture");
-                confirmationPaidQueue.remove(currentId);
-                continue;
+    public void confirmDuePayments() {
+        List<String> operationIds = transactionTemplate.execute(status -> claimDueOperations());
+        if (operationIds == null || operationIds.isEmpty()) {
+            return;
+        }
+        Flux<PaymentResponse> responses = Flux.fromIterable(operationIds)
+                .flatMap(this::sendPaymentConfirmationRequestForYooCash, config.getPaymentConfirmationConcurrency());
+        for (PaymentResponse response : responses.toIterable()) {
+            try {
+                transactionTemplate.execute(status -> {
+                    processingPaymentTransaction(response);
+                    return null;
+                });
+            } catch (RuntimeException ex) {
+                log.error("Payment processing error for id: " + response.getId() + " " + ex.getMessage() +
+                        " The payment will be checked again later", ex);
             }
-            processingPaymentTransaction(response);
         }
     }
 
-    @Async
-    @ValidateParamsRest
-    public CompletableFuture<String> topUpAccountBalanceAsync(
-            String hash, String sum, Long timestamp, CompletableFuture<String> completableFuture, String redirectURI)
-            throws PaymentException {
-        User user = authService.getCurrentUser();
-        if (user == null || !user.getHash().equals(hash)) {
-            throw new UsernameNotFoundException(EX_MSG_USER_NOT_FOUND);
+    /**
+     * Метод забирает платежи, по которым наступило время проверки, и назначает им следующую проверку
+     * Платежи, не подтвержденные за PAYMENT_CONFIRMATION_MAX_ATTEMPTS попыток, исключаются из очереди
+     *
+     * @return идентификаторы платежей в платежной системе
+     */
+    private List<String> claimDueOperations() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> operationIds = new ArrayList<>();
+        for (YooCashOperation yooCashOperation : yooCashOperationRepository
+                .findDueOperationsForUpdate(STATUS_PENDING, now, PAYMENT_CONFIRMATION_BATCH_SIZE)) {
+            int attempts = yooCashOperation.getCheckAttempts() + 1;
+            yooCashOperation.setCheckAttempts(attempts);
+            if (attempts > PAYMENT_CONFIRMATION_MAX_ATTEMPTS) {
+                yooCashOperation.setNextCheckAt(null);
+                log.error("Payment confirmation was not received after " + PAYMENT_CONFIRMATION_MAX_ATTEMPTS +
+                        " attempts. The payment has been removed from the processing queue. Payment id: " +
+                        yooCashOperation.getOperationId());
+            } else {
+                yooCashOperation.setNextCheckAt(now.plus(getConfirmationDelay(attempts), ChronoUnit.MILLIS));
+                operationIds.add(yooCashOperation.getOperationId());
+            }
+            yooCashOperationRepository.save(yooCashOperation);
         }
+        return operationIds;
+    }
+
+    /**
+     * Задержка до следующей проверки платежа: PAYMENT_CONFIRMATION_FALLBACK_DELAY * 2^(attempts - 1),
+     * но не более PAYMENT_CONFIRMATION_MAX_DELAY
+     */
+    protected static long getConfirmationDelay(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(PAYMENT_CONFIRMATION_FALLBACK_DELAY << shift, PAYMENT_CONFIRMATION_MAX_DELAY);
+    }
+
+    /**
+     * Создание платежа в платежной системе
+     * Ответ платежной системы сохраняется в базе данных в потоке boundedElastic, а не в потоке WebClient
+     */
+    private CompletableFuture<String> createPayment(User user, String sum, Long timestamp, String redirectURI) {
         LocalDateTime time = getLocalDateTimeFromTimestamp(timestamp);
         String idempotenceKey = generateIdempotenceKey();
-        PaymentResponse response = sendPaymentRequestForYooCash(sum,
-                user.getUserContacts().get(0).getContact(), idempotenceKey, redirectURI);
-        if (response == null || !response.getStatus().equals(STATUS_PENDING)) {
-            throw new PaymentException(EX_MSG_PAYMENT_SERVICE_ERROR);
-        }
-        saveYooCashOperationRequest(response, idempotenceKey, time, user);
-        confirmationPaidQueue.add(response.getId());
-        log.info("CREATE PAYMENT with id: " + response.getId() + " idempotency key: " + idempotenceKey +
-                " confirmation payment URI: " + response.getConfirmation().getConfirmationUrl());
-        completableFuture.complete(response.getConfirmation().getConfirmationUrl());
-        return completableFuture;
+        return sendPaymentRequestForYooCash(sum, user.getUserContacts().get(0).getContact(), idempotenceKey,
+                redirectURI)
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(response -> {
+                    if (!STATUS_PENDING.equals(response.getStatus())) {
+                        return Mono.<String>error(new PaymentException(EX_MSG_PAYMENT_SERVICE_ERROR));
+                    }
+                    saveYooCashOperationRequest(response, idempotenceKey, time, user);
+                    log.info("CREATE PAYMENT with id: " + response.getId() + " idempotency key: " +
+                            idempotenceKey + " confirmation payment URI: " +
+                            response.getConfirmation().getConfirmationUrl());
+                    return Mono.just(response.getConfirmation().getConfirmationUrl());
+                })
+                .switchIfEmpty(Mono.error(new PaymentException(EX_MSG_PAYMENT_SERVICE_ERROR)))
+                .onErrorMap(ex -> !(ex instanceof PaymentException), ex -> {
+                    log.error("Payment request failed for the user id: " + user.getId() + " " + ex.getMessage());
+                    return new PaymentException(EX_MSG_PAYMENT_SERVICE_ERROR);
+                })
+                .toFuture();
     }
 
-    private PaymentResponse sendPaymentRequestForYooCash(String sum, String userContact, String idempotenceKey,
-                                                         String redirectURI)
-            throws PaymentException {
-        ResponseEntity<PaymentResponse> response = webClient
+    private Mono<PaymentResponse> sendPaymentRequestForYooCash(String sum, String userContact,
+                                                               String idempotenceKey, String redirectURI) {
+        return webClient
                 .post()
                 .uri(config.getPaymentUri())
                 .headers(httpHeaders -> httpHeaders
@@ -195,29 +245,29 @@ public class PaymentServiceYooCashImpl implements PaymentService {
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(Mono.just(getPaymentForYooCash(sum, userContact, redirectURI)), PaymentRequest.class)
                 .retrieve()
-                .toEntity(PaymentResponse.class)
-                .block();
-        if (response == null || !response.getStatusCode().is2xxSuccessful()) {
-            throw new PaymentException(EX_MSG_PAYMENT_SERVICE_ERROR);
-        }
-        log.info("A payment request has been sent to the payment system for the contact: " + userContact);
-        return response.getBody();
+                .bodyToMono(PaymentResponse.class)
+                .doOnNext(response -> log.info("A payment request has been sent to the payment system " +
+                        "for the contact: " + userContact));
     }
 
-    private PaymentResponse sendPaymentConfirmationRequestForYooCash(String id) {
-        ResponseEntity<PaymentResponse> response = webClient
+    /**
+     * Неблокирующий запрос состояния платежа
+     * При ошибке платежной системы возвращается пустой результат, платеж будет проверен повторно позже
+     */
+    private Mono<PaymentResponse> sendPaymentConfirmationRequestForYooCash(String id) {
+        return webClient
                 .get()
                 .uri(config.getPaymentUri() + "/" + id)
                 .headers(httpHeaders -> httpHeaders
                         .setBasicAuth(config.getPaymentId(), config.getPaymentSecret()))
                 .retrieve()
-                .toEntity(PaymentResponse.class)
-                .block();
-        if (response == null || !response.getStatusCode().is2xxSuccessful()) {
-            return null;
-        }
-        log.info("Payment confirmation received for id: " + id);
-        return response.getBody();
+                .bodyToMono(PaymentResponse.class)
+                .doOnNext(response -> log.info("Payment confirmation received for id: " + id))
+                .onErrorResume(ex -> {
+                    log.warn("Payment status request failed for id: " + id + " " + ex.getMessage() +
+                            " The payment will be checked again later");
+                    return Mono.empty();
+                });
     }
 
     private PaymentRequest getPaymentForYooCash(String sum, String userContact, String redirectURI) {
@@ -239,43 +289,60 @@ public class PaymentServiceYooCashImpl implements PaymentService {
         yooCashOperation.setIdempotencyKey(idempotencyKey);
         yooCashOperation.setTime(time);
         yooCashOperation.setUser(user);
+        yooCashOperation.setCheckAttempts(0);
+        yooCashOperation.setNextCheckAt(LocalDateTime.now()
+                .plus(PAYMENT_CONFIRMATION_FALLBACK_DELAY, ChronoUnit.MILLIS));
         yooCashOperationRepository.save(yooCashOperation);
     }
 
+    /**
+     * Применение полученного статуса платежа
+     * Запись платежа блокируется на время транзакции, уже обработанный платеж повторно не применяется
+     */
     private void processingPaymentTransaction(PaymentResponse response) throws TransactionalException {
         Optional<YooCashOperation> yooCashOperationOpt = yooCashOperationRepository
-                .findByOperationId(response.getId());
-        if (yooCashOperationOpt.isPresent()) {
-            YooCashOperation yooCashOperation = yooCashOperationOpt.get();
-            yooCashOperation.setStatus(response.getStatus());
-            yooCashOperation.setPaymentMethod(response.getPaymentMethod().getType());
-            confirmationPaidQueue.remove(response.getId());
-            if (response.getStatus().equals(STATUS_CANCELED)) {
-                return;
-            }
-            if (response.getStatus().equals(STATUS_SUCCEEDED)) {
-                createTransactional(yooCashOperation.getUser(), yooCashOperation.getSum(),
-                        response.getPaymentMethod().getType());
-            }
+                .findByOperationIdForUpdate(response.getId());
+        if (!yooCashOperationOpt.isPresent()) {
+            log.error("There is no record of payment in the database with id: " + response.getId());
+            return;
+        }
+        YooCashOperation yooCashOperation = yooCashOperationOpt.get();
+        if (!STATUS_PENDING.equals(yooCashOperation.getStatus()) || response.getStatus().equals(STATUS_PENDING)) {
+            return;
+        }
+        String payType = response.getPaymentMethod() == null ? null : response.getPaymentMethod().getType();
+        yooCashOperation.setStatus(response.getStatus());
+        yooCashOperation.setPaymentMethod(payType);
+        yooCashOperation.setNextCheckAt(null);
+        yooCashOperationRepository.save(yooCashOperation);
+        if (response.getStatus().equals(STATUS_WAITING)) {
+            log.warn("Payment system parameters are incorrectly configured. Payments are transferred to the " +
+                    "status of waiting_for_capture");
+            return;
+        }
+        if (response.getStatus().equals(STATUS_SUCCEEDED)) {
+            createTransactional(yooCashOperation.getUser(), yooCashOperation.getSum(), payType);
         }
     }
 
+    /**
+     * Зачисление платежа на баланс пользователя
+     * Баланс увеличивается одним запросом, поэтому параллельная покупка книг не может потерять зачисление.
+     * В операции сохраняется баланс пользователя после зачисления.
+     */
     private void createTransactional(User user, String sum, String payType) throws TransactionalException {
-        Optional<User> userOptional = userRepository.findById(user.getId());
-        if (!userOptional.isPresent()) {
-            throw new TransactionalException(EX_MSG_USER_NOT_FOUND);
-        }
-        User curUser = userOptional.get();
         int curSum = (int) Double.parseDouble(sum);
         if (curSum <= 0) {
             throw new TransactionalException(EX_MSG_USER_NOT_FOUND);
         }
-        curUser.setBalance(curUser.getBalance() + curSum);
-        userRepository.save(curUser);
+        if (userRepository.creditBalance(user.getId(), curSum) == 0) {
+            throw new TransactionalException(EX_MSG_USER_NOT_FOUND);
+        }
         BalanceTransaction balanceTransaction = new BalanceTransaction();
-        balanceTransaction.setUser(curUser);
+        balanceTransaction.setUser(user);
         balanceTransaction.setTime(LocalDateTime.now());
         balanceTransaction.setValue(curSum);
+        balanceTransaction.setBalanceAfter(userRepository.getBalanceById(user.getId()));
         balanceTransaction.setDescription("Пополнение баланса пользователя: " + payType);
         balanceTransactionRepository.save(balanceTransaction);
     }
@@ -284,42 +351,17 @@ public class PaymentServiceYooCashImpl implements PaymentService {
         return Instant.ofEpochSecond(time / 1000).atZone(ZoneId.systemDefault()).toLocalDateTime();
     }
 
+    private static <T> CompletableFuture<T> getFailedFuture(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
     protected String generateIdempotenceKey() {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < LENGTH_IDEMPOTENCE_KEY; i++) {
-            sb.append(SYMBOLS[random.nextInt(SYMBOLS.length)]);
+            sb.append(SYMBOLS[ThreadLocalRandom.current().nextInt(SYMBOLS.length)]);
         }
         return sb.toString();
     }
-
-    private static class CachingPayment {
-        private final ConcurrentHashMap<PayRequest, CompletableFuture<String>> paymentRequests;
-
-        public CachingPayment() {
-            paymentRequests = new ConcurrentHashMap<>();
-        }
-
-        public void add(PayRequest key, CompletableFuture<String> value) {
-            paymentRequests.put(key, value);
-        }
-
-        public boolean isExist(PayRequest key) {
-            clear();
-            return paymentRequests.containsKey(key);
-        }
-
-        public String getValue(PayRequest key) throws ExecutionException, InterruptedException {
-            CompletableFuture<String> value = paymentRequests.get(key);
-            return value.get();
-        }
-
-        public void clear() {
-            for (PayRequest request : paymentRequests.keySet()) {
-                if ((request.getTime() + TIME_CACHING_PAYMENT_REQUEST_SEC * 1000) < System.currentTimeMillis()) {
-                    paymentRequests.remove(request);
-                }
-            }
-        }
-    }
-
-}
\ No newline at end of file
+}
@@ -1,54 +1,75 @@
 package com.example.bookshopapp.service;
 
+import com.example.bookshopapp.api.dto.BookFileDescriptor;
 import com.example.bookshopapp.api.dto.BookFileDto;
 import com.example.bookshopapp.api.dto.BookFileListDto;
 import com.example.bookshopapp.config.BookShopConfig;
-import com.example.bookshopapp.config.LanguageMessage;
-import com.example.bookshopapp.exception.BookListWrongParameterException;
 import com.example.bookshopapp.exception.ViewNotFoundParameterException;
 import com.example.bookshopapp.model.*;
-import com.example.bookshopapp.model.enums.BookStatus;
 import com.example.bookshopapp.repositories.Book2UserRepository;
 import com.example.bookshopapp.repositories.BookFileRepository;
 import com.example.bookshopapp.repositories.FileDownloadRepository;
+import com.example.bookshopapp.service.utils.BookFileDescriptorCache;
+import com.example.bookshopapp.service.utils.DownloadLinkSigner;
 import liquibase.util.file.FilenameUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_RESOURCE_NOT_FOUND;
 
 @Service
 @Slf4j
 public class ResourceStorageService {
+    public static final String UPLOAD_TEMP_SUFFIX = ".tmp";
+    private static final String UPLOAD_TEMP_PREFIX = "upload-";
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
     private final BookFileRepository bookFileRepository;
     private final FileDownloadRepository fileDownloadRepository;
     private final Book2UserRepository book2UserRepository;
-    private final AuthService authService;
+    private final Book2UserTypeService book2UserTypeService;
     private final BookShopConfig config;
+    private final BookFileDescriptorCache bookFileDescriptorCache =
+            new BookFileDescriptorCache(BookShopConfig.BOOK_FILE_DESCRIPTOR_CACHE_MAX_SIZE);
+    private final DownloadLinkSigner downloadLinkSigner;
 
     @Autowired
     public ResourceStorageService(BookFileRepository bookFileRepository, FileDownloadRepository fileDownloadRepository,
-                                  Book2UserRepository book2UserRepository, AuthService authService,
+                                  Book2UserRepository book2UserRepository, Book2UserTypeService book2UserTypeService,
                                   BookShopConfig config) {
         this.bookFileRepository = bookFileRepository;
         this.fileDownloadRepository = fileDownloadRepository;
         this.book2UserRepository = book2UserRepository;
-        this.authService = authService;
+        this.book2UserTypeService = book2UserTypeService;
         this.config = config;
+        this.downloadLinkSigner = new DownloadLinkSigner(config.getDownloadLinkSecret());
     }
 
     public String saveNewBookImage(MultipartFile file, String slug) throws IOException {
@@ -61,35 +82,106 @@ public class ResourceStorageService {
             }
             String fileName = slug + "." + FilenameUtils.getExtension(file.getOriginalFilename());
             Path path = Paths.get(config.getUploadPath(), fileName);
-            resourceURI = "/book-covers/" + fileName;
-            file.transferTo(path);
+            resourceURI = BookShopConfig.BOOK_COVERS_URI + fileName;
+            Path temp = Files.createTempFile(path.getParent(), UPLOAD_TEMP_PREFIX, UPLOAD_TEMP_SUFFIX);
+            try {
+                file.transferTo(temp);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
             log.info(fileName + " uploaded OK!");
         }
         return resourceURI;
     }
 
-    public String getFileSizeStr(Path path) throws IOException {
-        double value = Files.readAllBytes(path).length * BookShopConfig.RATIO_BYTES_TO_MB;
+    /**
+     * Размер файла для отображения, пустое значение - размер еще не определен сканером файлов
+     */
+    public String getFileSizeStr(Long size) {
+        if (size == null) {
+            return "";
+        }
+        double value = size * BookShopConfig.RATIO_BYTES_TO_MB;
         return String.format("%.1f", value) + " " + BookShopConfig.RATIO_BYTES_TO_MB_TEXT;
     }
 
-    public Path getBookFilePath(String hash) throws BookListWrongParameterException {
-        Optional<BookFile> bookFile = bookFileRepository.findBookFileByHash(hash);
-        if (!bookFile.isPresent()) {
-            log.warn("getBookFilePath (handling null value) hash:" + hash);
-            throw new BookListWrongParameterException(LanguageMessage.EX_MSG_MISSING_RESULT);
+    /**
+     * Метод сверяет сохраненные метаданные файла книги (размер, дата изменения, MIME тип, контрольная сумма)
+     * с файлом на диске и обновляет их при расхождении.
+     * Контрольная сумма пересчитывается только если изменились размер или дата изменения файла.
+     *
+     * @return true - метаданные изменились и сохранены
+     * @throws IOException файл отсутствует или недоступен
+     */
+    public boolean updateBookFileMetadata(BookFile bookFile) throws IOException {
+        Path path = Paths.get(config.getDownloadPath(), bookFile.getPath());
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        LocalDateTime lastModified = LocalDateTime.ofInstant(attributes.lastModifiedTime().toInstant(),
+                ZoneId.systemDefault()).truncatedTo(ChronoUnit.SECONDS);
+        String mimeType = getMimeType(bookFile.getFileName() != null ? Paths.get(bookFile.getFileName()) : path)
+                .toString();
+        if (bookFile.getChecksum() != null && Long.valueOf(attributes.size()).equals(bookFile.getSize()) &&
+                lastModified.equals(bookFile.getLastModified()) && mimeType.equals(bookFile.getMimeType())) {
+            return false;
         }
-        return Paths.get(bookFile.get().getPath());
+        bookFile.setSize(attributes.size());
+        bookFile.setLastModified(lastModified);
+        bookFile.setMimeType(mimeType);
+        bookFile.setChecksum(getChecksum(path));
+        bookFileRepository.save(bookFile);
+        bookFileDescriptorCache.evict(bookFile.getHash());
+        log.info("book file metadata updated: " + bookFile.getPath() + " size: " + bookFile.getSize());
+        return true;
     }
 
-    public MediaType getBookFileMime(String hash) throws BookListWrongParameterException {
-        Optional<BookFile> bookFile = bookFileRepository.findBookFileByHash(hash);
-        if (!bookFile.isPresent()) {
-            log.warn("getBookFileMime (handling null value) hash:" + hash);
-            throw new BookListWrongParameterException(LanguageMessage.EX_MSG_MISSING_RESULT);
+    /**
+     * Метод возвращает описание файла книги по хэшу. Описание запрашивается из базы данных один раз
+     * и далее используется из кэша до изменения метаданных файла.
+     *
+     * @throws ViewNotFoundParameterException файл с указанным хэшем не найден
+     */
+    public BookFileDescriptor getBookFileDescriptor(String hash) throws ViewNotFoundParameterException {
+        BookFileDescriptor descriptor = bookFileDescriptorCache.get(hash);
+        if (descriptor != null) {
+            return descriptor;
         }
-        String mimeType = URLConnection.guessContentTypeFromName(Paths
-                .get(bookFile.get().getPath()).getFileName().toString());
+        Optional<BookFileDescriptor> descriptorOpt = bookFileRepository.findBookFileDescriptorByHash(hash);
+        if (!descriptorOpt.isPresent()) {
+            log.warn("getBookFileDescriptor (handling null value) hash:" + hash);
+            throw new ViewNotFoundParameterException(EX_MSG_RESOURCE_NOT_FOUND);
+        }
+        bookFileDescriptorCache.put(descriptorOpt.get());
+        return descriptorOpt.get();
+    }
+
+    public Path getBookFilePath(BookFileDescriptor descriptor) {
+        return Paths.get(config.getDownloadPath(), descriptor.getPath());
+    }
+
+    /**
+     * Метод возвращает строгий ETag файла книги по сохраненной контрольной сумме.
+     * Контрольная сумма используется только если размер и дата изменения файла на диске совпадают с сохраненными,
+     * иначе файл изменился после последней проверки сканером и ETag не формируется.
+     *
+     * @return ETag в кавычках или null
+     */
+    public String getBookFileEtag(BookFileDescriptor descriptor, Path path) throws IOException {
+        if (descriptor.getChecksum() == null) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        LocalDateTime lastModified = LocalDateTime.ofInstant(attributes.lastModifiedTime().toInstant(),
+                ZoneId.systemDefault()).truncatedTo(ChronoUnit.SECONDS);
+        if (!Long.valueOf(attributes.size()).equals(descriptor.getSize()) ||
+                !lastModified.equals(descriptor.getLastModified())) {
+            return null;
+        }
+        return "\"" + descriptor.getChecksum() + "\"";
+    }
+
+    private MediaType getMimeType(Path path) {
+        String mimeType = URLConnection.guessContentTypeFromName(path.getFileName().toString());
         if (mimeType != null) {
             return MediaType.parseMediaType(mimeType);
         } else {
@@ -97,114 +189,231 @@ public class ResourceStorageService {
         }
     }
 
-    public byte[] getBookFileByteArray(String hash) throws IOException, BookListWrongParameterException {
-        Optional<BookFile> bookFile = bookFileRepository.findBookFileByHash(hash);
-        if (!bookFile.isPresent()) {
-            log.warn("getBookFileByteArray (handling null value) hash:" + hash);
-            throw new BookListWrongParameterException(LanguageMessage.EX_MSG_MISSING_RESULT);
-        }
-        Path path = Paths.get(config.getDownloadPath(), bookFile.get().getPath());
-        return Files.readAllBytes(path);
+    /**
+     * Контрольная сумма содержимого файла (FILE_CHECKSUM_ALGORITHM) в шестнадцатеричном виде
+     */
+    public String getChecksum(Path path) throws IOException {
+        return getChecksum(path, 0);
     }
 
-    public BookFileListDto getBooksFiles(Book book) throws IOException {
-        Set<BookFileDto> result = new TreeSet<>();
-        for (BookFile bookFile : book.getBookFiles()) {
-            BookFileDto bookFileDto = new BookFileDto(
-                    bookFile.getBookFileType().getName(),
-                    bookFile.getBookFileType().getDescription(),
-                    getFileSizeStr(Paths.get(config.getDownloadPath(), bookFile.getPath())),
-                    bookFile.getHash()
-            );
-            result.add(bookFileDto);
+    /**
+     * Контрольная сумма содержимого файла с ограничением скорости чтения
+     *
+     * @param maxBytesPerSec - максимальная скорость чтения в байтах в секунду, 0 - без ограничения
+     */
+    public String getChecksum(Path path, long maxBytesPerSec) throws IOException {
+        MessageDigest digest = getChecksumDigest();
+        byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
+        long start = System.nanoTime();
+        long total = 0;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                total += read;
+                if (maxBytesPerSec > 0) {
+                    throttle(total, start, maxBytesPerSec);
+                }
+            }
         }
-        return new BookFileListDto(true, result);
+        return toHex(digest.digest());
     }
 
-    public Book getBookByFileHash(String hash) throws ViewNotFoundParameterException {
-        Optional<BookFile> bookFileOpt = bookFileRepository.findBookFileByHash(hash);
-        if(!bookFileOpt.isPresent()){
-            throw new ViewNotFoundParameterException(EX_MSG_RESOURCE_NOT_FOUND);
+    /**
+     * Метод сохраняет загруженный файл книги в хранилище с адресацией по содержимому.
+     * Контрольная сумма вычисляется при записи загружаемого файла во временный файл, без повторного чтения.
+     * Если файл с таким содержимым уже есть в хранилище, новая копия не сохраняется, и запись BookFile
+     * ссылается на существующий файл. Число ссылок на файл хранилища - количество записей BookFile с его путем.
+     * Если после сохранения записи файла в хранилище нет (BookFileScrubber успел перенести его в карантин
+     * как неиспользуемый), файл восстанавливается из временного файла загрузки.
+     */
+    public BookFile saveNewBookFile(MultipartFile file, Book book, BookFileType bookFileType) throws IOException {
+        Path storePath = getContentStorePath();
+        Files.createDirectories(storePath);
+        Path temp = Files.createTempFile(storePath, UPLOAD_TEMP_PREFIX, UPLOAD_TEMP_SUFFIX);
+        try {
+            MessageDigest digest = getChecksumDigest();
+            byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
+            try (InputStream inputStream = file.getInputStream();
+                 OutputStream outputStream = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+            }
+            String checksum = toHex(digest.digest());
+            String contentPath = getContentPath(checksum);
+            Path target = Paths.get(config.getDownloadPath(), contentPath);
+            if (Files.exists(target)) {
+                if (bookFileRepository.countByPath(contentPath) == 0) {
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                }
+                log.info("book file content already stored: " + contentPath);
+            } else {
+                storeContent(temp, target);
+                log.info("book file content stored: " + contentPath);
+            }
+            String fileName = Paths.get(StringUtils.cleanPath(file.getOriginalFilename() == null ?
+                    checksum : file.getOriginalFilename())).getFileName().toString();
+            BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+            BookFile bookFile = new BookFile();
+            bookFile.setBook(book);
+            bookFile.setBookFileType(bookFileType);
+            bookFile.setHash(UUID.randomUUID().toString());
+            bookFile.setPath(contentPath);
+            bookFile.setFileName(fileName);
+            bookFile.setSize(attributes.size());
+            bookFile.setChecksum(checksum);
+            bookFile.setMimeType(getMimeType(Paths.get(fileName)).toString());
+            bookFile.setLastModified(LocalDateTime.ofInstant(attributes.lastModifiedTime().toInstant(),
+                    ZoneId.systemDefault()).truncatedTo(ChronoUnit.SECONDS));
+            BookFile savedBookFile = bookFileRepository.save(bookFile);
+            if (Files.notExists(target) && Files.exists(temp)) {
+                storeContent(temp, target);
+                log.info("book file content restored after scrub: " + contentPath);
+            }
+            return savedBookFile;
+        } finally {
+            Files.deleteIfExists(temp);
         }
-        return bookFileOpt.get().getBook();
+    }
+
+    private void storeContent(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     /**
-     * Метод проверяет возможность скачивания файла пользователем. Если файл доступен, то увеличивается счетчик
-     * скачиваний.
-     * Производятся следующие проверки:
-     * - авторизация пользователя
-     * - книга находится в статусе PAID или ARCHIVE
-     * - количество скачиваний
-     * @return false - доступ запрещен, true - доступ разрешен.
+     * Каталог хранилища файлов книг с адресацией по содержимому
      */
-    @Transactional
-    public boolean isAvailableFileAndUpdateCountDownload(String hash) {
-        User user = authService.getCurrentUser();
-        if(user == null){
-            return false;
-        }
-        Book book;
+    public Path getContentStorePath() {
+        return Paths.get(config.getDownloadPath(), BookShopConfig.CONTENT_STORE_DIR);
+    }
+
+    /**
+     * Каталог карантина: неиспользуемые файлы хранилища переносятся сюда и удаляются при следующей проверке
+     */
+    public Path getQuarantinePath() {
+        return Paths.get(config.getDownloadPath(), BookShopConfig.CONTENT_QUARANTINE_DIR);
+    }
+
+    /**
+     * Путь файла в хранилище относительно downloadPath. Файлы распределяются по подкаталогам
+     * по первым двум байтам контрольной суммы, чтобы в одном каталоге не было слишком много файлов.
+     */
+    public String getContentPath(String checksum) {
+        return BookShopConfig.CONTENT_STORE_DIR + "/" + checksum.substring(0, 2) + "/" + checksum.substring(2, 4) +
+                "/" + checksum;
+    }
+
+    private MessageDigest getChecksumDigest() {
         try {
-            book = getBookByFileHash(hash);
-        } catch (ViewNotFoundParameterException e) {
-            return false;
+            return MessageDigest.getInstance(BookShopConfig.FILE_CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
         }
-        if(!isBookPaid(book, user)){
-            return false;
+    }
+
+    private String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
         }
-        return isAvailableFile(book, user, true);
+        return sb.toString();
     }
 
-    private void createFileDownloadRecord(Book book, User user){
-        FileDownload fileDownload = new FileDownload();
-        fileDownload.setBook(book);
-        fileDownload.setUser(user);
-        fileDownload.setCount(1);
-        fileDownloadRepository.save(fileDownload);
+    /**
+     * Пауза, если прочитано больше, чем допускает ограничение скорости с начала чтения
+     */
+    private void throttle(long bytes, long startNanos, long maxBytesPerSec) throws InterruptedIOException {
+        long aheadNanos = (long) (bytes * 1e9 / maxBytesPerSec) - (System.nanoTime() - startNanos);
+        if (aheadNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("ResourceStorageService - checksum interrupted");
+            }
+        }
     }
 
-    private void incCountDownload(FileDownload fileDownload){
-        fileDownload.setCount(fileDownload.getCount() + 1);
-        fileDownloadRepository.save(fileDownload);
+    /**
+     * Метод возвращает список файлов книги с подписанными ссылками на скачивание для пользователя
+     */
+    public BookFileListDto getBooksFiles(Book book, User user) {
+        Set<BookFileDto> result = new TreeSet<>();
+        for (BookFile bookFile : book.getBookFiles()) {
+            BookFileDto bookFileDto = new BookFileDto(
+                    bookFile.getBookFileType().getName(),
+                    bookFile.getBookFileType().getDescription(),
+                    getFileSizeStr(bookFile.getSize()),
+                    bookFile.getHash(),
+                    getDownloadUrl(bookFile.getHash(), user.getId())
+            );
+            result.add(bookFileDto);
+        }
+        return new BookFileListDto(true, result);
+    }
+
+    /**
+     * Метод формирует ссылку на скачивание файла, подписанную для пользователя.
+     * Ссылка действительна DOWNLOAD_LINK_TTL_SEC секунд.
+     */
+    public String getDownloadUrl(String hash, Integer userId) {
+        long expires = System.currentTimeMillis() / 1000 + BookShopConfig.DOWNLOAD_LINK_TTL_SEC;
+        return BookShopConfig.BOOK_DOWNLOAD_URI + hash + "?user=" + userId + "&expires=" + expires +
+                "&signature=" + downloadLinkSigner.sign(hash, userId, expires);
     }
 
-    public byte[] getFileByHash(String hash) throws IOException {
-        byte[] data = getBookFileByteArray(hash);
-        log.info("book file data len: " + data.length);
-        return data;
+    /**
+     * Метод проверяет подпись и срок действия ссылки на скачивание без обращения к базе данных
+     */
+    public boolean isValidDownloadLink(String hash, Integer userId, long expires, String signature) {
+        return downloadLinkSigner.verify(hash, userId, expires, signature, System.currentTimeMillis() / 1000);
     }
 
-    public Path getFilePathByHash(String hash){
-        Path path = getBookFilePath(hash);
-        log.info("book file path: " + path);
-        return path;
+    /**
+     * Метод проверяет лимит скачиваний файла по подписанной ссылке. Если файл доступен, то увеличивается счетчик
+     * скачиваний. Авторизация пользователя и статус книги (PAID или ARCHIVED) проверены при выдаче ссылки.
+     * Счетчик не увеличивается только при продолжении засчитанного скачивания: запрос диапазона не с начала файла
+     * по той же ссылке (с тем же токеном продолжения), по которой было засчитано последнее скачивание.
+     * Любой другой запрос, в том числе запрос диапазона по новой ссылке, считается новым скачиванием.
+     * @param descriptor          - описание скачиваемого файла
+     * @param userId              - id пользователя из подписанной ссылки
+     * @param resumeToken         - токен продолжения скачивания (подпись ссылки)
+     * @param isRangeNotFromStart - запрошен диапазон не с начала файла
+     * @return false - доступ запрещен, true - доступ разрешен.
+     */
+    public boolean isAvailableFileAndUpdateCountDownload(BookFileDescriptor descriptor, Integer userId,
+                                                         String resumeToken, boolean isRangeNotFromStart) {
+        if (isRangeNotFromStart && resumeToken != null && fileDownloadRepository
+                .getByBookIdAndUserId(descriptor.getBookId(), userId)
+                .filter(fileDownload -> resumeToken.equals(fileDownload.getResumeToken())).isPresent()) {
+            return true;
+        }
+        return fileDownloadRepository.incrementCount(descriptor.getBookId(), userId, config.getMaxDownloadCount(),
+                resumeToken).isPresent();
     }
 
-    public MediaType getFileMediaTypeByHash(String hash){
-        MediaType mediaType = getBookFileMime(hash);
-        log.info("book file mime type: " + mediaType);
-        return mediaType;
+    /**
+     * Метод проверяет, что пользователь уже скачивал файлы книги.
+     * Используется для условных запросов (проверки актуальности скачанного файла), которые счетчик не увеличивают
+     */
+    public boolean isFileDownloaded(BookFileDescriptor descriptor, Integer userId) {
+        return fileDownloadRepository.getByBookIdAndUserId(descriptor.getBookId(), userId).isPresent();
     }
 
-    public boolean isBookPaid(Book book, User user){
-        Optional<Book2User> book2User = book2UserRepository.getBook2UserByUserAndBook(user, book);
-        return book2User.filter(value -> value.getBook2UserType().getCode().equals(BookStatus.PAID.getStatus()) ||
-                value.getBook2UserType().getCode().equals(BookStatus.ARCHIVED.getStatus())).isPresent();
+    public boolean isBookPaid(Integer bookId, Integer userId){
+        Optional<Book2User> book2User = book2UserRepository.getBook2UserByBookAndUserId(bookId, userId);
+        return book2User.filter(value -> book2UserTypeService.isPaid(value.getBook2UserType())).isPresent();
     }
 
-    public boolean isAvailableFile(Book book, User user, boolean isIncrementCounter){
-        Optional<FileDownload> fileDownload = fileDownloadRepository.getByBookAndUser(book, user);
-        if(!fileDownload.isPresent()){
-            createFileDownloadRecord(book, user);
-            return true;
-        }
-        if(fileDownload.get().getCount() >= config.getMaxDownloadCount()){
-            return false;
-        }
-        if(isIncrementCounter){
-            incCountDownload(fileDownload.get());
-        }
-        return true;
+    /**
+     * Метод проверяет, что лимит скачиваний файлов книги не исчерпан. Счетчик не изменяется,
+     * скачивания учитываются в isAvailableFileAndUpdateCountDownload
+     */
+    public boolean isAvailableFile(Integer bookId, User user){
+        Optional<FileDownload> fileDownload = fileDownloadRepository.getByBookIdAndUserId(bookId, user.getId());
+        return fileDownload.map(value -> value.getCount() < config.getMaxDownloadCount()).orElse(true);
     }
-}
\ No newline at end of file
+}
@@ -3,10 +3,8 @@ package com.example.bookshopapp.service;
 import com.example.bookshopapp.api.dto.TransactionalDto;
 import com.example.bookshopapp.api.request.PayRequest;
 import com.example.bookshopapp.api.response.TransactionalListResponse;
-import com.example.bookshopapp.aspect.ValidateParamsView;
 import com.example.bookshopapp.config.BookShopConfig;
 import com.example.bookshopapp.config.LanguageMessage;
-import com.example.bookshopapp.exception.PaymentException;
 import com.example.bookshopapp.exception.TransactionalException;
 import com.example.bookshopapp.exception.ViewEmptyParameterException;
 import com.example.bookshopapp.model.BalanceTransaction;
@@ -14,52 +12,68 @@ import com.example.bookshopapp.model.Book;
 import com.example.bookshopapp.model.User;
 import com.example.bookshopapp.model.enums.BookStatus;
 import com.example.bookshopapp.repositories.BalanceTransactionRepository;
+import com.example.bookshopapp.repositories.UserRepository;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.sql.Timestamp;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
-import static com.example.bookshopapp.config.BookShopConfig.SORT_PARAM_TRANSACTION;
+import static com.example.bookshopapp.config.BookShopConfig.CHECKOUT_MAX_ATTEMPTS;
+import static com.example.bookshopapp.config.BookShopConfig.TRANSACTIONS_PAGE_MAX_SIZE;
+import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_CHECKOUT_CONFLICT;
 import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_USER_NOT_FOUND;
 import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_WRONG_PARAM;
-import static org.springframework.transaction.annotation.Isolation.SERIALIZABLE;
-import static org.springframework.web.context.WebApplicationContext.SCOPE_SESSION;
 
 @Service
-@Scope(value = SCOPE_SESSION)
+@Slf4j
 public class TransactionalService {
 
     public static final String SORT_ASC = "asc";
     public static final String SORT_DESC = "desc";
+    private static final String CURSOR_SEPARATOR = "_";
+    private static final String CSV_DELIMITER = ",";
+    private static final String CSV_LINE_SEPARATOR = "\r\n";
+    private static final String CSV_HEADER = "time,value,balance,description" + CSV_LINE_SEPARATOR;
+    private static final String CSV_FORMULA_PREFIXES = "=+-@";
     private final PaymentService paymentService;
     private final AuthService authService;
     private final BookService bookService;
     private final BookStatusService bookStatusService;
     private final BalanceTransactionRepository balanceTransactionRepository;
+    private final UserRepository userRepository;
     private final BookShopConfig config;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     public TransactionalService(PaymentService paymentService, AuthService authService, BookService bookService,
                                 BookStatusService bookStatusService, BookShopConfig config,
-                                BalanceTransactionRepository balanceTransactionRepository) {
+                                BalanceTransactionRepository balanceTransactionRepository,
+                                UserRepository userRepository, PlatformTransactionManager transactionManager) {
         this.paymentService = paymentService;
         this.authService = authService;
         this.bookService = bookService;
         this.bookStatusService = bookStatusService;
         this.balanceTransactionRepository = balanceTransactionRepository;
+        this.userRepository = userRepository;
         this.config = config;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -68,80 +82,168 @@ public class TransactionalService {
      * хватающую для оплаты. В данном случае метод возвращает URI адрес на оплату.
      * Если баланс пользователя достаточен для покупки, то книги из корзины переводятся в статус PAID и уменьшается
      * баланс пользователя на сумму покупки. При успешном выполнении операции возвращается пустое значение.
+     * Покупка выполняется в одной короткой транзакции без блокировок на время расчета: баланс списывается условным
+     * запросом (только при достаточном остатке), книги переводятся в статус PAID одним запросом, операции по балансу
+     * вставляются пакетом. Если корзина или баланс изменились параллельным запросом, транзакция откатывается
+     * и покупка повторяется, но не более CHECKOUT_MAX_ATTEMPTS раз.
+     * Запрос в платежную систему не блокирует вызывающий поток, результат возвращается после ответа платежной
+     * системы; ошибка платежной системы (PaymentException) также передается через результат.
      *
      * @return URI ссылка на оплату и пустое значение
-     * @throws PaymentException ошибка платежной системы
      */
-    @Transactional(isolation = SERIALIZABLE, propagation = Propagation.REQUIRES_NEW)
-    public String handleCartPaid() throws PaymentException {
+    public CompletableFuture<String> handleCartPaid() {
         User user = authService.getCurrentUser();
         if (user == null) {
             throw new UsernameNotFoundException(EX_MSG_USER_NOT_FOUND);
         }
-        CartBooks cartBooks = new CartBooks(user);
-        if (cartBooks.getAmount() > user.getBalance()) {
-            return paymentService.topUpAccountBalance(
-                    new PayRequest(user.getHash(), String.valueOf(cartBooks.getAmount() - user.getBalance()),
-                            System.currentTimeMillis()), config.getPaymentRedirectUriCart());
+        for (int attempt = 1; attempt <= CHECKOUT_MAX_ATTEMPTS; attempt++) {
+            CartBooks cartBooks = new CartBooks(user);
+            if (cartBooks.getCartBookList().isEmpty()) {
+                return CompletableFuture.completedFuture("");
+            }
+            int balance = userRepository.getBalanceById(user.getId());
+            if (cartBooks.getAmount() > balance) {
+                return paymentService.topUpAccountBalance(
+                        new PayRequest(user.getHash(), String.valueOf(cartBooks.getAmount() - balance),
+                                System.currentTimeMillis()), config.getPaymentRedirectUriCart());
+            }
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> checkout(user, cartBooks, status)))) {
+                    return CompletableFuture.completedFuture("");
+                }
+            } catch (ConcurrencyFailureException ex) {
+                log.warn("Checkout conflict for user id: " + user.getId() + " " + ex.getMessage());
+            }
+            log.info("Checkout retry for user id: " + user.getId() + " attempt: " + attempt);
         }
-        changeStatusBookAndUserBalance(user, cartBooks);
-        addTransactional(user, cartBooks);
-        return "";
+        throw new TransactionalException(EX_MSG_CHECKOUT_CONFLICT);
     }
 
-    @ValidateParamsView
-    public TransactionalListResponse getTransactionalList(String sort, Integer offset, Integer limit)
+    /**
+     * Метод возвращает страницу операций по балансу пользователя
+     * Пагинация выполняется по ключу (time, id): следующая страница начинается после последней операции предыдущей,
+     * поэтому запрос не зависит от количества уже просмотренных операций и не требует подсчета общего количества.
+     * Каждая операция содержит баланс пользователя после ее выполнения.
+     *
+     * @param sort   - порядок сортировки по времени (asc, desc)
+     * @param cursor - значение nextCursor предыдущей страницы, null или пустое значение - первая страница
+     * @param limit  - размер страницы, не более TRANSACTIONS_PAGE_MAX_SIZE
+     */
+    public TransactionalListResponse getTransactionalList(String sort, String cursor, Integer limit)
             throws ViewEmptyParameterException {
-        if (!sort.equals(SORT_ASC) && !sort.equals(SORT_DESC)) {
+        if (sort == null || (!sort.equals(SORT_ASC) && !sort.equals(SORT_DESC)) ||
+                limit == null || limit <= 0 || limit > TRANSACTIONS_PAGE_MAX_SIZE) {
             throw new ViewEmptyParameterException(EX_MSG_WRONG_PARAM);
         }
-        Pageable pageable = PageRequest.of(offset, limit, sort.equals(SORT_ASC) ?
-                Sort.by(SORT_PARAM_TRANSACTION).ascending() : Sort.by(SORT_PARAM_TRANSACTION).descending());
         User user = authService.getCurrentUser();
         if (user == null) {
             throw new UsernameNotFoundException(EX_MSG_USER_NOT_FOUND);
         }
-        Page<BalanceTransaction> transactions = balanceTransactionRepository.findAllByUser(user, pageable);
-        return getTransactionList(transactions);
+        LocalDateTime afterTime = null;
+        Integer afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            int separator = cursor.lastIndexOf(CURSOR_SEPARATOR);
+            try {
+                afterTime = LocalDateTime.parse(cursor.substring(0, Math.max(separator, 0)));
+                afterId = Integer.parseInt(cursor.substring(separator + 1));
+            } catch (DateTimeParseException | NumberFormatException ex) {
+                throw new ViewEmptyParameterException(EX_MSG_WRONG_PARAM);
+            }
+        }
+        List<TransactionalDto> transactions = balanceTransactionRepository
+                .findPageByUserId(user.getId(), sort.equals(SORT_ASC), afterTime, afterId, limit + 1);
+        String nextCursor = null;
+        if (transactions.size() > limit) {
+            transactions = new ArrayList<>(transactions.subList(0, limit));
+            TransactionalDto last = transactions.get(limit - 1);
+            nextCursor = last.getLocalDateTime() + CURSOR_SEPARATOR + last.getId();
+        }
+        return new TransactionalListResponse(transactions, nextCursor);
+    }
+
+    /**
+     * Выгрузка всех операций по балансу пользователя в формате CSV
+     * Операции читаются из базы данных курсором и сразу записываются, история целиком в памяти не хранится.
+     * Описание операции выгружается без HTML разметки. Значения, которые табличный редактор может принять
+     * за формулу (начинаются с =, +, -, @), экранируются апострофом, так как описание содержит название книги.
+     */
+    @Transactional(readOnly = true)
+    public void exportTransactionalList(Writer writer) throws IOException {
+        User user = authService.getCurrentUser();
+        if (user == null) {
+            throw new UsernameNotFoundException(EX_MSG_USER_NOT_FOUND);
+        }
+        writer.write(CSV_HEADER);
+        try {
+            balanceTransactionRepository.streamByUserId(user.getId(), transaction -> {
+                try {
+                    writer.write(transaction.getTime() + CSV_DELIMITER + transaction.getValue() + CSV_DELIMITER +
+                            (transaction.getBalance() == null ? "" : transaction.getBalance()) + CSV_DELIMITER +
+                            getCsvValue(transaction.getDescription()) + CSV_LINE_SEPARATOR);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.flush();
     }
 
-    private TransactionalListResponse getTransactionList(Page<BalanceTransaction> balanceTransactions) {
-        TransactionalListResponse transactionalListResponse = new TransactionalListResponse();
-        transactionalListResponse.setCount((int) balanceTransactions.getTotalElements());
-        List<TransactionalDto> transactionalDtoList = new ArrayList<>();
-        for (BalanceTransaction transaction : balanceTransactions) {
-            TransactionalDto transactionalDto = new TransactionalDto();
-            transactionalDto.setValue(transaction.getValue());
-            transactionalDto.setDescription(transaction.getDescription());
-            transactionalDto.setTime(String.valueOf(Timestamp.valueOf(transaction.getTime())));
-            transactionalDto.setLocalDateTime(transaction.getTime());
-            transactionalDtoList.add(transactionalDto);
+    private static String getCsvValue(String value) {
+        if (value == null) {
+            return "";
         }
-        transactionalListResponse.setTransactions(transactionalDtoList);
-        return transactionalListResponse;
+        String text = Jsoup.parse(value).text();
+        if (!text.isEmpty() && CSV_FORMULA_PREFIXES.indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        return "\"" + text.replace("\"", "\"\"") + "\"";
     }
 
-    private void changeStatusBookAndUserBalance(User user, CartBooks cartBooks) {
-        for (Book book : cartBooks.getCartBookList()) {
-            bookStatusService.changeOrCreateBook2UserLink(user, book.getId(), BookStatus.PAID);
-            user.setBalance(user.getBalance() - BookService.getDiscountPrice(book.getPrice(), book.getDiscount()));
-            if (user.getBalance() < 0) {
-                throw new TransactionalException("The user's balance is less than the cost of the book");
-            }
+    /**
+     * Транзакция покупки книг из корзины
+     *
+     * @return true - покупка выполнена, false - корзина или баланс изменились, транзакция отменена
+     */
+    private boolean checkout(User user, CartBooks cartBooks, TransactionStatus status) {
+        if (userRepository.debitBalance(user.getId(), cartBooks.getAmount()) == 0) {
+            status.setRollbackOnly();
+            return false;
+        }
+        List<Integer> booksIds = cartBooks.getCartBookList().stream().map(Book::getId).collect(Collectors.toList());
+        if (bookStatusService.changeCartBooksToPaid(user, booksIds) != booksIds.size()) {
+            status.setRollbackOnly();
+            return false;
         }
+        int balance = userRepository.getBalanceById(user.getId());
+        balanceTransactionRepository.insertAll(getBalanceTransactions(user, cartBooks, balance));
+        return true;
     }
 
-    private void addTransactional(User user, CartBooks cartBooks) {
+    /**
+     * Операции списания за каждую книгу с балансом после списания
+     *
+     * @param balance - баланс пользователя после списания полной стоимости покупки
+     */
+    private List<BalanceTransaction> getBalanceTransactions(User user, CartBooks cartBooks, int balance) {
+        LocalDateTime time = LocalDateTime.now();
+        List<BalanceTransaction> balanceTransactions = new ArrayList<>();
+        int balanceAfter = balance + cartBooks.getAmount();
         for (Book book : cartBooks.getCartBookList()) {
+            int price = BookService.getDiscountPrice(book.getPrice(), book.getDiscount());
+            balanceAfter -= price;
             BalanceTransaction balanceTransaction = new BalanceTransaction();
-            balanceTransaction.setValue(BookService.getDiscountPrice(book.getPrice(), book.getDiscount()) * -1);
+            balanceTransaction.setValue(price * -1);
+            balanceTransaction.setBalanceAfter(balanceAfter);
             balanceTransaction.setDescription(LanguageMessage
                     .getMsgPaidBookDescription(book.getTitle(), book.getSlug()));
             balanceTransaction.setUser(user);
             balanceTransaction.setBook(book);
-            balanceTransaction.setTime(LocalDateTime.now());
-            balanceTransactionRepository.save(balanceTransaction);
+            balanceTransaction.setTime(time);
+            balanceTransactions.add(balanceTransaction);
         }
+        return balanceTransactions;
     }
 
     @Getter
@@ -0,0 +1,102 @@
+package com.example.bookshopapp.service.utils;
+
+import com.example.bookshopapp.model.enums.BookStatus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш счетчиков книг пользователя по статусам (корзина, отложенные, купленные).
+ * Размер кэша ограничен: при переполнении вытесняется пользователь, к которому дольше всего не обращались.
+ * Счетчики устаревают через ttl после записи, даже если сброс после изменения статуса был потерян.
+ * Чтобы загрузка из базы данных, начатая до изменения статуса, не записала в кэш устаревшие значения,
+ * у каждого пользователя свое поколение: загрузка запоминает его и сохраняется только если с тех пор
+ * счетчики этого пользователя не сбрасывались. Сброс счетчиков одного пользователя не мешает загрузке других.
+ */
+public class BookCountersCache {
+    private final long ttlNanos;
+    private final Map<Integer, Entry> entries;
+
+    public BookCountersCache(int maxUsers, long ttlNanos) {
+        if (maxUsers <= 0 || ttlNanos <= 0) {
+            throw new IllegalArgumentException("BookCountersCache - invalid cache parameters");
+        }
+        this.ttlNanos = ttlNanos;
+        entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    public Map<BookStatus, Integer> get(Integer userId) {
+        return get(userId, System.nanoTime());
+    }
+
+    /**
+     * Метод возвращает счетчики пользователя или null, если их нет в кэше или они устарели
+     *
+     * @param now - текущее время в наносекундах
+     */
+    public synchronized Map<BookStatus, Integer> get(Integer userId, long now) {
+        Entry entry = entries.get(userId);
+        if (entry == null || entry.counters == null) {
+            return null;
+        }
+        if (now - entry.writtenAt >= ttlNanos) {
+            entry.counters = null;
+            return null;
+        }
+        return entry.counters;
+    }
+
+    /**
+     * Метод возвращает текущее поколение счетчиков пользователя, его нужно получить до чтения счетчиков
+     * из базы данных
+     */
+    public synchronized long getGeneration(Integer userId) {
+        return entries.computeIfAbsent(userId, id -> new Entry()).generation;
+    }
+
+    public void put(Integer userId, Map<BookStatus, Integer> userCounters, long generation) {
+        put(userId, userCounters, generation, System.nanoTime());
+    }
+
+    /**
+     * Метод сохраняет счетчики, если после начала загрузки счетчики пользователя не сбрасывались.
+     * Если пользователь был вытеснен из кэша во время загрузки, счетчики не сохраняются
+     *
+     * @param generation - поколение счетчиков пользователя, полученное до чтения счетчиков
+     * @param now        - текущее время в наносекундах
+     */
+    public synchronized void put(Integer userId, Map<BookStatus, Integer> userCounters, long generation, long now) {
+        Entry entry = entries.get(userId);
+        if (entry != null && entry.generation == generation) {
+            entry.counters = userCounters;
+            entry.writtenAt = now;
+        }
+    }
+
+    /**
+     * Метод сбрасывает счетчики пользователя. Запись пользователя остается в кэше, чтобы загрузки,
+     * начатые до сброса, увидели новое поколение
+     */
+    public synchronized void evict(Integer userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            entry.generation++;
+            entry.counters = null;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class Entry {
+        private long generation;
+        private Map<BookStatus, Integer> counters;
+        private long writtenAt;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.bookshopapp.service.utils;
+
+import com.example.bookshopapp.api.dto.BookFileDescriptor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш описаний файлов книг по хэшу файла.
+ * Размер кэша ограничен: при переполнении вытесняется описание, к которому дольше всего не обращались.
+ * Отсутствующие в базе данных хэши не кэшируются.
+ */
+public class BookFileDescriptorCache {
+    private final Map<String, BookFileDescriptor> descriptors;
+
+    public BookFileDescriptorCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("BookFileDescriptorCache - invalid cache size");
+        }
+        descriptors = new LinkedHashMap<String, BookFileDescriptor>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BookFileDescriptor> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized BookFileDescriptor get(String hash) {
+        return descriptors.get(hash);
+    }
+
+    public synchronized void put(BookFileDescriptor descriptor) {
+        descriptors.put(descriptor.getHash(), descriptor);
+    }
+
+    public synchronized void evict(String hash) {
+        descriptors.remove(hash);
+    }
+}
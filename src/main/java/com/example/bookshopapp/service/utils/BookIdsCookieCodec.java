@@ -0,0 +1,162 @@
+package com.example.bookshopapp.service.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Компактное кодирование списка id книг для cookie (корзина, отложенные).
+ * Формат значения: "1.[payload].[signature]", где 1 - версия формата,
+ * payload - Base64URL от количества id и разностей между отсортированными id в формате varint,
+ * signature - Base64URL от первых 12 байт HMAC-SHA256 над payload.
+ * Значения в старом формате (slug книг через "/") не распознаются и возвращаются как null.
+ */
+public class BookIdsCookieCodec {
+    public static final String VERSION_PREFIX = "1.";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_LENGTH = 12;
+    private static final int[] EMPTY = new int[0];
+
+    private final SecretKeySpec secretKey;
+    private final int maxIds;
+    private final ThreadLocal<Mac> macHolder = ThreadLocal.withInitial(this::createMac);
+
+    public BookIdsCookieCodec(String secret, int maxIds) {
+        if (secret == null || secret.isEmpty() || maxIds <= 0) {
+            throw new IllegalArgumentException("BookIdsCookieCodec - invalid codec parameters");
+        }
+        this.secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * Метод кодирует id книг, повторяющиеся и неположительные id отбрасываются
+     *
+     * @return значение cookie или пустая строка, если id нет
+     */
+    public String encode(int[] ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        byte[] buffer = new byte[5 * (sorted.length + 1)];
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] > 0 && (i == 0 || sorted[i] != sorted[i - 1])) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        if (count == 0) {
+            return "";
+        }
+        if (count > maxIds) {
+            throw new IllegalArgumentException("BookIdsCookieCodec - too many ids: " + count);
+        }
+        int length = writeVarint(buffer, 0, count);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            length = writeVarint(buffer, length, sorted[i] - previous);
+            previous = sorted[i];
+        }
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] payload = Arrays.copyOf(buffer, length);
+        return VERSION_PREFIX + encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    /**
+     * Метод декодирует значение cookie
+     *
+     * @return отсортированные id книг; пустой массив, если значение повреждено или подпись неверна;
+     * null, если значение записано в старом формате
+     */
+    public int[] decode(String value) {
+        if (value == null || value.isEmpty()) {
+            return EMPTY;
+        }
+        if (!value.startsWith(VERSION_PREFIX)) {
+            return null;
+        }
+        int separator = value.indexOf('.', VERSION_PREFIX.length());
+        if (separator < 0) {
+            return EMPTY;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payload = decoder.decode(value.substring(VERSION_PREFIX.length(), separator));
+            signature = decoder.decode(value.substring(separator + 1));
+        } catch (IllegalArgumentException ex) {
+            return EMPTY;
+        }
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            return EMPTY;
+        }
+        return readIds(payload);
+    }
+
+    private int[] readIds(byte[] payload) {
+        long[] cursor = new long[1];
+        int position = readVarint(payload, 0, cursor);
+        long count = cursor[0];
+        if (position < 0 || count <= 0 || count > maxIds || count > payload.length - position) {
+            return EMPTY;
+        }
+        int[] ids = new int[(int) count];
+        long previous = 0;
+        for (int i = 0; i < ids.length; i++) {
+            position = readVarint(payload, position, cursor);
+            if (position < 0 || cursor[0] <= 0 || previous + cursor[0] > Integer.MAX_VALUE) {
+                return EMPTY;
+            }
+            previous += cursor[0];
+            ids[i] = (int) previous;
+        }
+        return position == payload.length ? ids : EMPTY;
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * @return позиция после прочитанного значения или -1, если значение повреждено
+     */
+    private static int readVarint(byte[] buffer, int position, long[] result) {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position >= buffer.length) {
+                return -1;
+            }
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                result[0] = value;
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] sign(byte[] payload) {
+        Mac mac = macHolder.get();
+        return Arrays.copyOf(mac.doFinal(payload), SIGNATURE_LENGTH);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("BookIdsCookieCodec - HMAC is not available", ex);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bookshopapp.service.utils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Уменьшение обложки книги средствами Java ImageIO.
+ * Изображение вписывается в заданный размер с сохранением пропорций и не увеличивается.
+ * Уменьшение выполняется последовательно в два раза за шаг, чтобы избежать артефактов билинейной интерполяции
+ * при сильном уменьшении. Результат сохраняется в JPEG, прозрачные области заливаются белым цветом.
+ * Размер изображения проверяется по заголовку файла до декодирования, так как небольшой файл может
+ * объявлять размер, для которого декодированному изображению не хватит памяти.
+ */
+public class CoverImageResizer {
+    private static final String FORMAT_JPEG = "jpeg";
+
+    private CoverImageResizer() {
+    }
+
+    /**
+     * Метод читает изображение, если его размер не превышает maxPixels
+     *
+     * @return изображение или null, если формат изображения не поддерживается
+     * @throws IOException - изображение больше maxPixels или не читается
+     */
+    public static BufferedImage read(File file, long maxPixels) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(file)) {
+            if (imageInputStream == null) {
+                throw new IOException("CoverImageResizer - image is not available: " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                long width = reader.getWidth(0);
+                long height = reader.getHeight(0);
+                if (width * height > maxPixels) {
+                    throw new IOException("CoverImageResizer - image is too large: " + width + "x" + height);
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public static BufferedImage resize(BufferedImage source, int maxWidth, int maxHeight) {
+        double scale = Math.min(1.0, Math.min((double) maxWidth / source.getWidth(),
+                (double) maxHeight / source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage result = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            result = draw(result, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return result;
+    }
+
+    /**
+     * Метод сохраняет изображение в формате JPEG
+     *
+     * @param quality - качество сжатия от 0 до 1
+     */
+    public static void writeJpeg(BufferedImage image, float quality, OutputStream outputStream) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(FORMAT_JPEG);
+        if (!writers.hasNext()) {
+            throw new IOException("CoverImageResizer - no JPEG writer available");
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.bookshopapp.service.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Подпись ссылок на скачивание файлов книг (HMAC-SHA256).
+ * Подписываются хэш файла, id пользователя и время окончания действия ссылки, поэтому проверка ссылки
+ * выполняется без обращения к базе данных. Экземпляр Mac не потокобезопасен и создается один раз для каждого потока.
+ */
+public class DownloadLinkSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private final ThreadLocal<Mac> macs;
+
+    public DownloadLinkSigner(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("DownloadLinkSigner - secret is not set");
+        }
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+
+    /**
+     * @param expires - время окончания действия ссылки в секундах от начала эпохи
+     * @return подпись в формате base64url без выравнивания
+     */
+    public String sign(String hash, Integer userId, long expires) {
+        byte[] signature = macs.get().doFinal((hash + ":" + userId + ":" + expires)
+                .getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    /**
+     * Метод проверяет подпись и срок действия ссылки. Подписи сравниваются за постоянное время.
+     *
+     * @param now - текущее время в секундах от начала эпохи
+     */
+    public boolean verify(String hash, Integer userId, long expires, String signature, long now) {
+        if (signature == null || expires < now) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(hash, userId, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.bookshopapp.service.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш для объединения одинаковых запросов (dedup) с ограничением времени жизни и размера.
+ * Одновременные и повторные в течение ttl запросы с одним ключом получают один и тот же результат,
+ * при этом загрузка выполняется один раз. Записи хранятся в порядке добавления, у всех записей одинаковое
+ * время жизни, поэтому устаревшие записи всегда находятся в начале и удаляются за O(1) на запись.
+ * Неуспешный результат из кэша удаляется, чтобы следующий запрос мог выполниться повторно.
+ */
+public class ExpiringDedupCache<K, V> {
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ExpiringDedupCache(long ttlNanos, int maxSize) {
+        if (ttlNanos <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("ExpiringDedupCache - invalid cache parameters");
+        }
+        this.ttlNanos = ttlNanos;
+        this.maxSize = maxSize;
+    }
+
+    public CompletableFuture<V> getOrLoad(K key, Supplier<CompletableFuture<V>> loader) {
+        return getOrLoad(key, loader, System.nanoTime());
+    }
+
+    /**
+     * Метод возвращает результат из кэша или выполняет загрузку, если актуального результата нет
+     *
+     * @param key    - ключ запроса
+     * @param loader - загрузка результата, выполняется вне блокировки кэша
+     * @param now    - текущее время в наносекундах
+     */
+    public CompletableFuture<V> getOrLoad(K key, Supplier<CompletableFuture<V>> loader, long now) {
+        Entry<V> entry;
+        synchronized (entries) {
+            evictExpired(now);
+            Entry<V> existing = entries.get(key);
+            if (existing != null) {
+                hits.incrementAndGet();
+                return existing.future;
+            }
+            misses.incrementAndGet();
+            entry = new Entry<>(now);
+            entries.put(key, entry);
+            if (entries.size() > maxSize) {
+                Iterator<Entry<V>> iterator = entries.values().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        CompletableFuture<V> loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException ex) {
+            loaded = new CompletableFuture<>();
+            loaded.completeExceptionally(ex);
+        }
+        loaded.whenComplete((value, ex) -> {
+            if (ex != null) {
+                synchronized (entries) {
+                    entries.remove(key, entry);
+                }
+                entry.future.completeExceptionally(ex);
+            } else {
+                entry.future.complete(value);
+            }
+        });
+        return entry.future;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && now - iterator.next().getValue().created >= ttlNanos) {
+            iterator.remove();
+        }
+    }
+
+    private static class Entry<V> {
+        private final long created;
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+
+        private Entry(long created) {
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.bookshopapp.service.utils;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Отправка файла в ответ на HTTP запрос без загрузки файла в память.
+ * Поддерживается заголовок Range с одним диапазоном (ответ 206) и условие If-Range по ETag или дате изменения файла.
+ * Условные запросы (If-None-Match, If-Modified-Since) проверяются методом isNotModified без чтения файла.
+ * Несколько диапазонов в одном запросе не поддерживаются, в этом случае файл отправляется целиком.
+ * Если контейнер сервлетов поддерживает sendfile (Tomcat NIO), файл передается ядром из файловой системы
+ * напрямую в сокет, иначе копируется через FileChannel.transferTo. Расход памяти не зависит от размера файла.
+ */
+public class FileRangeSender {
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    private FileRangeSender() {
+    }
+
+    /**
+     * Метод отправляет файл или запрошенный диапазон файла
+     *
+     * @param path     - путь к файлу
+     * @param etag     - строгий ETag файла в кавычках, null - не известен
+     * @param fileName - имя файла для заголовка Content-Disposition
+     */
+    public static void send(Path path, MediaType mediaType, String etag, String fileName,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long fileLength = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        setValidators(response, etag, lastModified);
+        response.setContentType(mediaType.toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+                .filename(fileName, StandardCharsets.UTF_8).build().toString());
+
+        long start = 0;
+        long end = fileLength - 1;
+        List<HttpRange> ranges = getRanges(request, etag, lastModified);
+        if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            try {
+                start = range.getRangeStart(fileLength);
+                end = range.getRangeEnd(fileLength);
+            } catch (IllegalArgumentException ex) {
+                start = fileLength;
+            }
+            if (start >= fileLength || start > end) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
+        }
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+        if (length <= 0 || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, path.toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transfer(channel, start, length, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    /**
+     * Метод проверяет условия If-None-Match и If-Modified-Since.
+     * Если указан If-None-Match, дата не проверяется.
+     *
+     * @param etag         - строгий ETag файла в кавычках, null - не известен
+     * @param lastModified - дата изменения файла в миллисекундах
+     * @return true - у клиента актуальная версия файла
+     */
+    public static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            if (etag == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Ответ 304 с валидаторами файла, без тела
+     */
+    public static void sendNotModified(HttpServletResponse response, String etag, long lastModified) {
+        response.setStatus(HttpStatus.NOT_MODIFIED.value());
+        setValidators(response, etag, lastModified);
+    }
+
+    /**
+     * Метод проверяет, что запрошен один диапазон, начинающийся не с начала файла (в том числе bytes=-N).
+     * Такой запрос может продолжать ранее начатое скачивание, но сам по себе этого не доказывает
+     */
+    public static boolean isRangeNotFromStart(HttpServletRequest request) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return false;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 && ranges.get(0).getRangeStart(Long.MAX_VALUE) > 0;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Копирование части файла порциями не более TRANSFER_CHUNK_SIZE
+     */
+    public static void transfer(FileChannel channel, long position, long length, WritableByteChannel target)
+            throws IOException {
+        long end = position + length;
+        while (position < end) {
+            long transferred = channel.transferTo(position, Math.min(end - position, TRANSFER_CHUNK_SIZE), target);
+            if (transferred <= 0) {
+                throw new IOException("FileRangeSender - file is shorter than expected");
+            }
+            position += transferred;
+        }
+    }
+
+    private static void setValidators(HttpServletResponse response, String etag, long lastModified) {
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+        }
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+    }
+
+    /**
+     * Диапазоны из заголовка Range; пустой список, если заголовка нет, он некорректен
+     * или файл изменился после версии из заголовка If-Range
+     */
+    private static List<HttpRange> getRanges(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeSatisfied(request, etag, lastModified)) {
+            return Collections.emptyList();
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException ex) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * If-Range допускает только строгое сравнение ETag, поэтому слабый ETag условию не соответствует
+     */
+    private static boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+}
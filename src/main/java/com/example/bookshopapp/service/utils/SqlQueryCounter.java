@@ -0,0 +1,27 @@
+package com.example.bookshopapp.service.utils;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Счетчик SQL запросов Hibernate в текущем потоке.
+ * Подключается как StatementInspector, поэтому видит каждый подготовленный запрос, включая загрузку
+ * lazy коллекций. Счетчик только растет: количество запросов за период (HTTP запрос, вызов метода, тест)
+ * определяется разностью значений getCount() в начале и в конце, поэтому вложенные замеры не мешают друг другу.
+ * Запросы через JdbcTemplate не учитываются.
+ */
+public class SqlQueryCounter implements StatementInspector {
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    /**
+     * Метод возвращает количество запросов, выполненных в текущем потоке с момента его создания
+     */
+    public static long getCount() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.bookshopapp.service.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ограничитель частоты запросов по алгоритму "token bucket".
+ * Каждому ключу соответствует корзина ёмкостью capacity, которая пополняется на один маркер за refillNanos.
+ * Корзины распределены по полосам (stripes) с собственной блокировкой, поэтому потоки с разными ключами почти
+ * не конкурируют между собой. Размер каждой полосы ограничен: при переполнении вытесняется корзина, к которой
+ * дольше всего не обращались.
+ */
+public class TokenBucketRateLimiter {
+    private final int capacity;
+    private final long refillNanos;
+    private final Stripe[] stripes;
+
+    public TokenBucketRateLimiter(int capacity, long refillNanos, int stripeCount, int maxKeysPerStripe) {
+        if (capacity <= 0 || refillNanos <= 0 || stripeCount <= 0 || maxKeysPerStripe <= 0) {
+            throw new IllegalArgumentException("TokenBucketRateLimiter - invalid limiter parameters");
+        }
+        this.capacity = capacity;
+        this.refillNanos = refillNanos;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxKeysPerStripe);
+        }
+    }
+
+    public boolean tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * Метод пытается забрать один маркер из корзины ключа
+     *
+     * @param key - ключ ограничения (контакт, IP адрес)
+     * @param now - текущее время в наносекундах
+     * @return true - запрос разрешен, false - лимит исчерпан
+     */
+    public boolean tryAcquire(String key, long now) {
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % stripes.length];
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.refill(now);
+            }
+            if (bucket.tokens == 0) {
+                return false;
+            }
+            bucket.tokens--;
+            return true;
+        }
+    }
+
+    /**
+     * Метод возвращает время в секундах до появления следующего маркера в корзине ключа
+     */
+    public long secondsToNextToken(String key, long now) {
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % stripes.length];
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                return 0;
+            }
+            bucket.refill(now);
+            if (bucket.tokens > 0) {
+                return 0;
+            }
+            long nanos = refillNanos - (now - bucket.lastRefill);
+            return Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+        }
+    }
+
+    private class Bucket {
+        private int tokens;
+        private long lastRefill;
+
+        private Bucket(int tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefill;
+            if (elapsed < refillNanos) {
+                return;
+            }
+            long newTokens = elapsed / refillNanos;
+            if (tokens + newTokens >= capacity) {
+                tokens = capacity;
+                lastRefill = now;
+            } else {
+                tokens += (int) newTokens;
+                lastRefill += newTokens * refillNanos;
+            }
+        }
+    }
+
+    private static class Stripe {
+        private final Map<String, Bucket> buckets;
+
+        private Stripe(int maxKeys) {
+            buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+    }
+}
@@ -2120,7 +2120,7 @@
     Authors().init();
     var Card = function () {
       var bookTemplate = function (book) {
-        return '<div class="Card">' + '   <div class="Card-picture">' + '<a href="/books/' + book.slug + '">' + '<img src="' + book.image + '">\n' + '</a>' +
+        return '<div class="Card">' + '   <div class="Card-picture">' + '<a href="/books/' + book.slug + '">' + '<img src="' + book.imageCard + '">\n' + '</a>' +
           (book.discount ? '<div class="Card-sale">' + book.discount + '% скидка</div>' : '') +
           (book.isBestseller ? '<div class="Card-ribbon"><span class="Card-ribbonText">Бестселлер</span></div>' : '') +
           (book.status === 'PAID' ? ' <a class="Card-status" title="Куплена"><img src="/assets/img/icons/check.svg" alt="Куплена"></a>\n' : '') +
@@ -3738,6 +3738,7 @@
           date.getHours() + ':' +
           date.getMinutes() + '</td>\n' + '<td><span class="Transactions_textSuccess">\n' + '<strong>' +
           transValue + ' р.\n' + '</strong></span>\n' + '</td>\n' + '<td>' +
+          (transaction.balance == null ? '' : transaction.balance + ' р.') + '</td>\n' + '<td>' +
           transaction.description + '</td>\n' + '</tr>';
       }
 
@@ -3754,10 +3755,10 @@
               result.responseJSON.transactions.forEach(function (transaction) {
                 data += transactionTemplate(transaction);
               });
-              var curCount = ($('.Transactions-get').data('transactionoffset') + 1) *
-                $('.Transactions-get').data('transactionlimit');
-              if (result.responseJSON.count <= curCount) {
-                $('.Transactions-footer').hide();
+              if (result.responseJSON.nextCursor == null) {
+                $('.Transactions-get').closest('.Transactions-footer').hide();
+              } else {
+                $('.Transactions-get').data('transactioncursor', result.responseJSON.nextCursor);
               }
               $('.Transactions tbody').append(data);
               $(window).scrollTop(scroll);
@@ -3775,11 +3776,7 @@
             e.preventDefault();
             getData('/api/transactions', {
               sort: $this.data('transactionsort'),
-              offset: function () {
-                var oldOffset = $this.data('transactionoffset');
-                $this.data('transactionoffset', ++oldOffset);
-                return $this.data('transactionoffset');
-              },
+              cursor: $this.data('transactioncursor'),
               limit: $this.data('transactionlimit')
             })
           });
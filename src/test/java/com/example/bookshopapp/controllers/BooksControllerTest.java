@@ -0,0 +1,194 @@
+package com.example.bookshopapp.controllers;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.repositories.BookFileRepository;
+import com.example.bookshopapp.service.ResourceStorageService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource("/application-test.yaml")
+@Sql(value = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = {"/delete-all.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class BooksControllerTest {
+
+    public static final int TEST_USER_ID = 2;
+    public static final int TEST_OTHER_USER_ID = 1;
+    public static final int TEST_PAID_BOOK_ID = 10;
+    public static final String TEST_PAID_BOOK_SLUG = "book-uov-326";
+    public static final String TEST_USER_CONTACT = "test@mail.ru";
+    public static final String TEST_FILE_NAME = "book.pdf";
+    public static final byte[] TEST_FILE_CONTENT = "test book content".getBytes();
+    private static final Path downloadPath = createDownloadPath();
+    private final MockMvc mockMvc;
+    private final JdbcTemplate jdbcTemplate;
+    private final ResourceStorageService storage;
+    private final BookShopConfig config;
+
+    @SpyBean
+    private BookFileRepository bookFileRepository;
+
+    @Autowired
+    BooksControllerTest(MockMvc mockMvc, JdbcTemplate jdbcTemplate, ResourceStorageService storage,
+                        BookShopConfig config) {
+        this.mockMvc = mockMvc;
+        this.jdbcTemplate = jdbcTemplate;
+        this.storage = storage;
+        this.config = config;
+    }
+
+    @DynamicPropertySource
+    static void storageProperties(DynamicPropertyRegistry registry) {
+        registry.add("app-config.download-path", downloadPath::toString);
+    }
+
+    @AfterAll
+    static void deleteDownloadPath() throws IOException {
+        try (Stream<Path> paths = Files.walk(downloadPath)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void bookFileResolvesMetadataOnce() throws Exception {
+        String hash = createBookFile();
+        String url = storage.getDownloadUrl(hash, TEST_USER_ID);
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/pdf"))
+                .andExpect(content().bytes(TEST_FILE_CONTENT));
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(TEST_FILE_CONTENT));
+
+        verify(bookFileRepository, times(1)).findBookFileDescriptorByHash(hash);
+    }
+
+    @Test
+    void bookFileNotModified() throws Exception {
+        String hash = createBookFile();
+        String url = storage.getDownloadUrl(hash, TEST_USER_ID);
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED));
+        mockMvc.perform(get(url).header(HttpHeaders.IF_MODIFIED_SINCE,
+                        Files.getLastModifiedTime(downloadPath.resolve(TEST_FILE_NAME)).toMillis()))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count FROM file_download WHERE book_id = ?",
+                Integer.class, TEST_PAID_BOOK_ID));
+    }
+
+    @Test
+    void bookFileRejectsInvalidSignature() throws Exception {
+        String hash = createBookFile();
+        String url = storage.getDownloadUrl(hash, TEST_USER_ID);
+
+        mockMvc.perform(get("/books/download/" + hash))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(get(url.replace("user=" + TEST_USER_ID, "user=" + TEST_OTHER_USER_ID)))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(get(url.replaceAll("expires=\\d+", "expires=" + (System.currentTimeMillis() / 1000 - 1))))
+                .andExpect(status().is3xxRedirection());
+        verifyNoInteractions(bookFileRepository);
+    }
+
+    @Test
+    void bookFileResumeWithSameLinkIsNotCounted() throws Exception {
+        String hash = createBookFile();
+        String url = storage.getDownloadUrl(hash, TEST_USER_ID);
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=1-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(TEST_FILE_CONTENT, 1, TEST_FILE_CONTENT.length)));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count FROM file_download WHERE book_id = ?",
+                Integer.class, TEST_PAID_BOOK_ID));
+    }
+
+    @Test
+    void bookFileRangeAtMaxCountIsRefused() throws Exception {
+        String hash = createBookFile();
+        String url = storage.getDownloadUrl(hash, TEST_USER_ID);
+        jdbcTemplate.update("INSERT INTO file_download (user_id, book_id, count, resume_token) VALUES (?, ?, ?, ?)",
+                TEST_USER_ID, TEST_PAID_BOOK_ID, config.getMaxDownloadCount(), "other-link-signature");
+
+        mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=1-"))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(get(url).header(HttpHeaders.RANGE, "bytes=-5"))
+                .andExpect(status().is3xxRedirection());
+        assertEquals(config.getMaxDownloadCount(), jdbcTemplate.queryForObject(
+                "SELECT count FROM file_download WHERE book_id = ?", Integer.class, TEST_PAID_BOOK_ID));
+    }
+
+    @Test
+    @WithUserDetails(TEST_USER_CONTACT)
+    void saveNewBookFileIsForbiddenForCustomer() throws Exception {
+        mockMvc.perform(multipart("/books/" + TEST_PAID_BOOK_SLUG + "/file/save")
+                        .file(new MockMultipartFile("file", TEST_FILE_NAME, "application/pdf", TEST_FILE_CONTENT))
+                        .param("type", "1"))
+                .andExpect(status().isForbidden());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_file", Integer.class));
+    }
+
+    @Test
+    @WithUserDetails(TEST_USER_CONTACT)
+    void saveNewBookImageIsForbiddenForCustomer() throws Exception {
+        mockMvc.perform(multipart("/books/" + TEST_PAID_BOOK_SLUG + "/img/save")
+                        .file(new MockMultipartFile("file", "cover.png", "image/png", TEST_FILE_CONTENT)))
+                .andExpect(status().isForbidden());
+    }
+
+    private String createBookFile() throws IOException {
+        String hash = UUID.randomUUID().toString();
+        Files.write(downloadPath.resolve(TEST_FILE_NAME), TEST_FILE_CONTENT);
+        jdbcTemplate.update("INSERT INTO book_file_type (id, name, description) VALUES (1, 'PDF', 'pdf')");
+        jdbcTemplate.update("INSERT INTO book_file (hash, type_id, path, book_id) VALUES (?, 1, ?, ?)",
+                hash, TEST_FILE_NAME, TEST_PAID_BOOK_ID);
+        return hash;
+    }
+
+    private static Path createDownloadPath() {
+        try {
+            return Files.createTempDirectory("book-files");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
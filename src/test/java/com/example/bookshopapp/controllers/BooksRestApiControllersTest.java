@@ -0,0 +1,39 @@
+package com.example.bookshopapp.controllers;
+
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.utils.QueryBudget;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource("/application-test.yaml")
+@Sql(value = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = {"/delete-all.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class BooksRestApiControllersTest {
+
+    private static final int POPULAR_BOOKS_LIMIT = 20;
+    private final MockMvc mockMvc;
+
+    @Autowired
+    BooksRestApiControllersTest(MockMvc mockMvc) {
+        this.mockMvc = mockMvc;
+    }
+
+    @Test
+    @QueryBudget(5)
+    void getPopularBooksWithinQueryBudget() throws Exception {
+        mockMvc.perform(get("/api/books/popular").param("limit", String.valueOf(POPULAR_BOOKS_LIMIT)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books.length()").value(POPULAR_BOOKS_LIMIT))
+                .andExpect(header().exists(BookShopConfig.SQL_QUERY_COUNT_HEADER));
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.bookshopapp.controllers;
+
+import com.example.bookshopapp.api.request.PayRequest;
+import com.example.bookshopapp.config.LanguageMessage;
+import com.example.bookshopapp.exception.TransactionalException;
+import com.example.bookshopapp.model.BalanceTransaction;
+import com.example.bookshopapp.model.User;
+import com.example.bookshopapp.model.YooCashOperation;
+import com.example.bookshopapp.repositories.BalanceTransactionRepository;
+import com.example.bookshopapp.repositories.UserRepository;
+import com.example.bookshopapp.repositories.YooCashOperationRepository;
+import com.example.bookshopapp.service.TransactionalService;
+import com.example.bookshopapp.utils.PaymentProviderStub;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.time.LocalDateTime;
+
+import static com.example.bookshopapp.config.LanguageMessage.EX_MSG_CHECKOUT_CONFLICT;
+import static com.example.bookshopapp.service.PaymentServiceYooCashImpl.STATUS_PENDING;
+import static com.example.bookshopapp.service.PaymentServiceYooCashImpl.STATUS_SUCCEEDED;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource("/application-test.yaml")
+@Sql(value = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = {"/delete-all.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class CartRestControllerTest {
+
+    public static final int TEST_USER_ID = 2;
+    public static final int TEST_USER_BALANCE = 3221;
+    public static final String TEST_PAYMENT_ID = "2a4f7b3e-000f-5000-8000-18db351245c7";
+    public static final String TEST_PAYMENT_SUM = "100.00";
+    public static final String TEST_USER_CONTACT = "test@mail.ru";
+    public static final String TEST_USER_HASH = "125-92-7549";
+    private static final PaymentProviderStub paymentProvider = PaymentProviderStub.start();
+    private final MockMvc mockMvc;
+    private final UserRepository userRepository;
+    private final YooCashOperationRepository yooCashOperationRepository;
+    private final BalanceTransactionRepository balanceTransactionRepository;
+
+    @SpyBean
+    private TransactionalService transactionalService;
+
+    @Autowired
+    CartRestControllerTest(MockMvc mockMvc, UserRepository userRepository,
+                           YooCashOperationRepository yooCashOperationRepository,
+                           BalanceTransactionRepository balanceTransactionRepository) {
+        this.mockMvc = mockMvc;
+        this.userRepository = userRepository;
+        this.yooCashOperationRepository = yooCashOperationRepository;
+        this.balanceTransactionRepository = balanceTransactionRepository;
+    }
+
+    @DynamicPropertySource
+    static void paymentProperties(DynamicPropertyRegistry registry) {
+        registry.add("app-config.payment-uri", paymentProvider::getPaymentUri);
+    }
+
+    @AfterAll
+    static void stopPaymentProvider() {
+        paymentProvider.stop();
+    }
+
+    @Test
+    @WithUserDetails(TEST_USER_CONTACT)
+    void handlePaymentRedirectionCompletesAsync() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        PayRequest payRequest = new PayRequest(TEST_USER_HASH, "100", System.currentTimeMillis());
+        int paymentsCount = paymentProvider.getPaymentsCount();
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/payment").contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsBytes(payRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value("true"))
+                .andExpect(jsonPath("$.redirect").value("true"));
+
+        assertEquals(paymentsCount + 1, paymentProvider.getPaymentsCount());
+        assertEquals(1, yooCashOperationRepository.count());
+    }
+
+    @Test
+    @WithUserDetails(TEST_USER_CONTACT)
+    void handleTransactionListUsesCursor() throws Exception {
+        User user = userRepository.findById(TEST_USER_ID).orElseThrow(IllegalStateException::new);
+        LocalDateTime time = LocalDateTime.now().withNano(0);
+        for (int i = 1; i <= 3; i++) {
+            BalanceTransaction balanceTransaction = new BalanceTransaction();
+            balanceTransaction.setUser(user);
+            balanceTransaction.setTime(time.plusMinutes(i));
+            balanceTransaction.setValue(i);
+            balanceTransaction.setBalanceAfter(TEST_USER_BALANCE + i);
+            balanceTransaction.setDescription("test transaction " + i);
+            balanceTransactionRepository.save(balanceTransaction);
+        }
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/transactions").param("sort", "desc").param("limit", "2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(2))
+                .andExpect(jsonPath("$.transactions[0].value").value(3))
+                .andExpect(jsonPath("$.transactions[0].balance").value(TEST_USER_BALANCE + 3))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn();
+        String cursor = JsonPath.read(mvcResult.getResponse().getContentAsString(), "$.nextCursor");
+
+        mockMvc.perform(get("/api/transactions").param("sort", "desc").param("limit", "2")
+                        .param("cursor", cursor))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.transactions[0].value").value(1))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        mockMvc.perform(get("/api/transactions/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("test transaction 3")));
+    }
+
+    @Test
+    @WithUserDetails(TEST_USER_CONTACT)
+    void handleTransactionExportWritesPlainText() throws Exception {
+        User user = userRepository.findById(TEST_USER_ID).orElseThrow(IllegalStateException::new);
+        String[] descriptions = {LanguageMessage.getMsgPaidBookDescription("Test \"book\"", "test-book"),
+                "=HYPERLINK(\"http://example.com\")"};
+        for (String description : descriptions) {
+            BalanceTransaction balanceTransaction = new BalanceTransaction();
+            balanceTransaction.setUser(user);
+            balanceTransaction.setTime(LocalDateTime.now());
+            balanceTransaction.setValue(-1);
+            balanceTransaction.setDescription(description);
+            balanceTransactionRepository.save(balanceTransaction);
+        }
+
+        mockMvc.perform(get("/api/transactions/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Test \"\"book\"\"\"\r\n")))
+                .andExpect(content().string(not(containsString("<a href"))))
+                .andExpect(content().string(containsString("\"'=HYPERLINK(\"\"http://example.com\"\")\"")));
+    }
+
+    @Test
+    void handlePaymentNotificationIsIdempotent() throws Exception {
+        YooCashOperation yooCashOperation = new YooCashOperation();
+        yooCashOperation.setUser(userRepository.findById(TEST_USER_ID).orElseThrow(IllegalStateException::new));
+        yooCashOperation.setOperationId(TEST_PAYMENT_ID);
+        yooCashOperation.setIdempotencyKey("testIdempotenceKey");
+        yooCashOperation.setSum(TEST_PAYMENT_SUM);
+        yooCashOperation.setStatus(STATUS_PENDING);
+        yooCashOperation.setTime(LocalDateTime.now());
+        yooCashOperation.setNextCheckAt(LocalDateTime.now().plusHours(1));
+        yooCashOperationRepository.save(yooCashOperation);
+        paymentProvider.setPayment(TEST_PAYMENT_ID, STATUS_SUCCEEDED, TEST_PAYMENT_SUM);
+
+        ObjectMapper mapper = new ObjectMapper();
+        RequestBuilder requestBuilder = post("/api/payments/notify").contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsBytes(paymentProvider.getNotification(TEST_PAYMENT_ID)));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(requestBuilder)
+                    .andDo(print())
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.result").value("true"));
+        }
+
+        assertEquals(TEST_USER_BALANCE + 100,
+                userRepository.findById(TEST_USER_ID).orElseThrow(IllegalStateException::new).getBalance());
+        assertEquals(STATUS_SUCCEEDED, yooCashOperationRepository.findByOperationId(TEST_PAYMENT_ID)
+                .orElseThrow(IllegalStateException::new).getStatus());
+    }
+
+    @Test
+    @WithUserDetails(TEST_USER_CONTACT)
+    void handleOrderCheckoutConflictRedirectsToCart() throws Exception {
+        doThrow(new TransactionalException(EX_MSG_CHECKOUT_CONFLICT)).when(transactionalService).handleCartPaid();
+
+        MvcResult mvcResult = mockMvc.perform(get("/order"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("cart"))
+                .andExpect(flash().attribute("checkoutConflict", true));
+    }
+}
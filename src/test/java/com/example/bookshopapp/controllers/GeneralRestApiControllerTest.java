@@ -4,21 +4,24 @@ import com.example.bookshopapp.api.request.ChangeBookStatusRequest;
 import com.example.bookshopapp.config.BookShopConfig;
 import com.example.bookshopapp.model.Book2User;
 import com.example.bookshopapp.repositories.Book2UserRepository;
+import com.example.bookshopapp.service.CookieService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.RequestBuilder;
 
-import java.util.Collections;
-import java.util.Optional;
+import javax.servlet.http.Cookie;
+import java.util.*;
 
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -32,18 +35,23 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 class GeneralRestApiControllerTest {
 
     public static final int TEST_BOOK_ID = 25;
-    public static final String TEST_BOOK_SLUG = "book-hrf-593";
     public static final int TEST_BOOK_CART_ID = 5;
+    public static final int TEST_BOOK_KEPT_ID = 1;
+    public static final int TEST_BOOK_PAID_ID = 10;
+    public static final int TEST_BOOK_ARCHIVED_ID = 15;
     public static final int TEST_USER_ID = 2;
     public static final String CONTACT = "test@mail.ru";
     private static final Integer TEST_BOOK_FAIL_ID = 100;
     private final MockMvc mockMvc;
     private final Book2UserRepository book2UserRepository;
+    private final CookieService cookieService;
 
     @Autowired
-    GeneralRestApiControllerTest(MockMvc mockMvc, Book2UserRepository book2UserRepository) {
+    GeneralRestApiControllerTest(MockMvc mockMvc, Book2UserRepository book2UserRepository,
+                                 CookieService cookieService) {
         this.mockMvc = mockMvc;
         this.book2UserRepository = book2UserRepository;
+        this.cookieService = cookieService;
     }
 
     @Test
@@ -62,7 +70,8 @@ class GeneralRestApiControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.result").value("true"))
                 .andExpect(cookie().exists(BookShopConfig.CART_COOKIE_NAME))
-                .andExpect(cookie().value(BookShopConfig.CART_COOKIE_NAME, TEST_BOOK_SLUG));
+                .andExpect(result -> assertArrayEquals(new int[]{TEST_BOOK_ID}, cookieService.getBookIdsByContents(
+                        result.getResponse().getCookie(BookShopConfig.CART_COOKIE_NAME).getValue())));
     }
 
     @Test
@@ -147,4 +156,151 @@ class GeneralRestApiControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.result").value("false"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithUserDetails(CONTACT)
+    void handleChangeBookStatusBulkAddToCart() throws Exception {
+        ChangeBookStatusRequest request = new ChangeBookStatusRequest();
+        request.setStatus("CART");
+        request.setBooksIds(Arrays.asList(TEST_BOOK_KEPT_ID, TEST_BOOK_CART_ID, TEST_BOOK_PAID_ID, TEST_BOOK_ID,
+                TEST_BOOK_FAIL_ID));
+
+        ObjectMapper mapper = new ObjectMapper();
+        RequestBuilder requestBuilder = post("/api/changeBookStatus/bulk").contentType(MediaType.APPLICATION_JSON).
+                content(mapper.writeValueAsBytes(request));
+
+        mockMvc.perform(requestBuilder)
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.result").value("true"))
+                .andExpect(jsonPath("$.books[*].bookId").value(contains(TEST_BOOK_KEPT_ID, TEST_BOOK_CART_ID,
+                        TEST_BOOK_PAID_ID, TEST_BOOK_ID, TEST_BOOK_FAIL_ID)))
+                .andExpect(jsonPath("$.books[*].result").value(contains("CHANGED", "UNCHANGED", "REJECTED",
+                        "CREATED", "NOT_FOUND")));
+        assertEquals("CART", book2UserRepository.getBook2UserByBookAndUserId(TEST_BOOK_KEPT_ID, TEST_USER_ID)
+                .map(book2User -> book2User.getBook2UserType().getCode()).orElse(null));
+        assertEquals("CART", book2UserRepository.getBook2UserByBookAndUserId(TEST_BOOK_ID, TEST_USER_ID)
+                .map(book2User -> book2User.getBook2UserType().getCode()).orElse(null));
+        assertEquals("PAID", book2UserRepository.getBook2UserByBookAndUserId(TEST_BOOK_PAID_ID, TEST_USER_ID)
+                .map(book2User -> book2User.getBook2UserType().getCode()).orElse(null));
+    }
+
+    @Test
+    @WithUserDetails(CONTACT)
+    void handleChangeBookStatusBulkUnlink() throws Exception {
+        ChangeBookStatusRequest request = new ChangeBookStatusRequest();
+        request.setStatus("UNLINK");
+        request.setBooksIds(Arrays.asList(TEST_BOOK_KEPT_ID, TEST_BOOK_CART_ID, TEST_BOOK_PAID_ID, TEST_BOOK_ID));
+
+        ObjectMapper mapper = new ObjectMapper();
+        RequestBuilder requestBuilder = post("/api/changeBookStatus/bulk").contentType(MediaType.APPLICATION_JSON).
+                content(mapper.writeValueAsBytes(request));
+
+        mockMvc.perform(requestBuilder)
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[*].result").value(contains("REMOVED", "REMOVED", "REJECTED",
+                        "UNCHANGED")));
+        assertFalse(book2UserRepository.getBook2UserByBookAndUserId(TEST_BOOK_KEPT_ID, TEST_USER_ID).isPresent());
+        assertFalse(book2UserRepository.getBook2UserByBookAndUserId(TEST_BOOK_CART_ID, TEST_USER_ID).isPresent());
+        assertTrue(book2UserRepository.getBook2UserByBookAndUserId(TEST_BOOK_PAID_ID, TEST_USER_ID).isPresent());
+    }
+
+    @Test
+    @WithUserDetails(CONTACT)
+    void handleChangeBookStatusBulkArchive() throws Exception {
+        ChangeBookStatusRequest request = new ChangeBookStatusRequest();
+        request.setStatus("ARCHIVED");
+        request.setBooksIds(Arrays.asList(TEST_BOOK_PAID_ID, TEST_BOOK_ARCHIVED_ID, TEST_BOOK_CART_ID));
+
+        ObjectMapper mapper = new ObjectMapper();
+        RequestBuilder requestBuilder = post("/api/changeBookStatus/bulk").contentType(MediaType.APPLICATION_JSON).
+                content(mapper.writeValueAsBytes(request));
+
+        mockMvc.perform(requestBuilder)
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[*].result").value(contains("CHANGED", "UNCHANGED", "REJECTED")));
+        assertEquals("ARCHIVED", book2UserRepository.getBook2UserByBookAndUserId(TEST_BOOK_PAID_ID, TEST_USER_ID)
+                .map(book2User -> book2User.getBook2UserType().getCode()).orElse(null));
+        assertEquals("CART", book2UserRepository.getBook2UserByBookAndUserId(TEST_BOOK_CART_ID, TEST_USER_ID)
+                .map(book2User -> book2User.getBook2UserType().getCode()).orElse(null));
+    }
+
+    @Test
+    void handleChangeBookStatusBulkAddToCartNoAuth() throws Exception {
+        ChangeBookStatusRequest request = new ChangeBookStatusRequest();
+        request.setStatus("CART");
+        request.setBooksIds(Arrays.asList(TEST_BOOK_KEPT_ID, TEST_BOOK_CART_ID, TEST_BOOK_ID, TEST_BOOK_FAIL_ID));
+
+        ObjectMapper mapper = new ObjectMapper();
+        RequestBuilder requestBuilder = post("/api/changeBookStatus/bulk").contentType(MediaType.APPLICATION_JSON)
+                .cookie(createBookIdsCookie(BookShopConfig.CART_COOKIE_NAME,
+                                Collections.singletonList(TEST_BOOK_CART_ID)),
+                        createBookIdsCookie(BookShopConfig.POSTPONED_COOKIE_NAME,
+                                Collections.singletonList(TEST_BOOK_KEPT_ID)))
+                .content(mapper.writeValueAsBytes(request));
+
+        mockMvc.perform(requestBuilder)
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value("true"))
+                .andExpect(jsonPath("$.books[*].result").value(contains("CHANGED", "UNCHANGED", "CREATED",
+                        "NOT_FOUND")))
+                .andExpect(result -> assertArrayEquals(new int[]{TEST_BOOK_KEPT_ID, TEST_BOOK_CART_ID, TEST_BOOK_ID},
+                        cookieService.getBookIdsByContents(result.getResponse()
+                                .getCookie(BookShopConfig.CART_COOKIE_NAME).getValue())))
+                .andExpect(result -> assertArrayEquals(new int[0], cookieService.getBookIdsByContents(
+                        result.getResponse().getCookie(BookShopConfig.POSTPONED_COOKIE_NAME).getValue())));
+    }
+
+    @Test
+    void handleChangeBookStatusBulkUnlinkNoAuth() throws Exception {
+        ChangeBookStatusRequest request = new ChangeBookStatusRequest();
+        request.setStatus("UNLINK");
+        request.setBooksIds(Arrays.asList(TEST_BOOK_CART_ID, TEST_BOOK_ID));
+
+        ObjectMapper mapper = new ObjectMapper();
+        RequestBuilder requestBuilder = post("/api/changeBookStatus/bulk").contentType(MediaType.APPLICATION_JSON)
+                .cookie(createBookIdsCookie(BookShopConfig.CART_COOKIE_NAME,
+                        Collections.singletonList(TEST_BOOK_CART_ID)))
+                .content(mapper.writeValueAsBytes(request));
+
+        mockMvc.perform(requestBuilder)
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[*].result").value(contains("REMOVED", "UNCHANGED")))
+                .andExpect(result -> assertArrayEquals(new int[0], cookieService.getBookIdsByContents(
+                        result.getResponse().getCookie(BookShopConfig.CART_COOKIE_NAME).getValue())));
+    }
+
+    @Test
+    void handleChangeBookStatusBulkCookieLimitNoAuth() throws Exception {
+        List<Integer> cartBooksIds = new ArrayList<>();
+        for (int i = 1; i <= BookShopConfig.BOOK_COOKIE_MAX_IDS; i++) {
+            cartBooksIds.add(TEST_BOOK_FAIL_ID + i);
+        }
+        ChangeBookStatusRequest request = new ChangeBookStatusRequest();
+        request.setStatus("CART");
+        request.setBooksIds(Collections.singletonList(TEST_BOOK_ID));
+
+        ObjectMapper mapper = new ObjectMapper();
+        RequestBuilder requestBuilder = post("/api/changeBookStatus/bulk").contentType(MediaType.APPLICATION_JSON)
+                .cookie(createBookIdsCookie(BookShopConfig.CART_COOKIE_NAME, cartBooksIds))
+                .content(mapper.writeValueAsBytes(request));
+
+        mockMvc.perform(requestBuilder)
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.result").value("false"))
+                .andExpect(cookie().doesNotExist(BookShopConfig.CART_COOKIE_NAME));
+    }
+
+    private Cookie createBookIdsCookie(String name, Collection<Integer> booksIds) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cookieService.addBookIdsToCookieResponse(response, name, booksIds);
+        return response.getCookie(name);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.api.dto.BookFileDescriptor;
+import com.example.bookshopapp.config.BookShopConfig;
+import com.example.bookshopapp.model.Book;
+import com.example.bookshopapp.model.BookFile;
+import com.example.bookshopapp.model.BookFileType;
+import com.example.bookshopapp.model.User;
+import com.example.bookshopapp.repositories.BookFileRepository;
+import com.example.bookshopapp.repositories.BookFileTypeRepository;
+import com.example.bookshopapp.repositories.BookRepository;
+import com.example.bookshopapp.repositories.FileDownloadRepository;
+import com.example.bookshopapp.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource("/application-test.yaml")
+@Sql(value = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = {"/delete-all.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class ResourceStorageServiceTest {
+
+    public static final int TEST_USER_ID = 2;
+    public static final int TEST_PAID_BOOK_ID = 10;
+    public static final String TEST_FILE_HASH = "test-file-hash";
+    private static final int REQUESTS = 100;
+    private static final int THREADS = 32;
+    private static final int THROTTLED_FILE_SIZE = 1024 * 1024;
+    private static final Path downloadPath = createDownloadPath();
+
+    private final ResourceStorageService resourceStorageService;
+    private final UserRepository userRepository;
+    private final FileDownloadRepository fileDownloadRepository;
+    private final BookRepository bookRepository;
+    private final BookFileRepository bookFileRepository;
+    private final BookFileTypeRepository bookFileTypeRepository;
+    private final BookShopConfig config;
+
+    @Autowired
+    ResourceStorageServiceTest(ResourceStorageService resourceStorageService, UserRepository userRepository,
+                               FileDownloadRepository fileDownloadRepository, BookRepository bookRepository,
+                               BookFileRepository bookFileRepository, BookFileTypeRepository bookFileTypeRepository,
+                               BookShopConfig config) {
+        this.resourceStorageService = resourceStorageService;
+        this.userRepository = userRepository;
+        this.fileDownloadRepository = fileDownloadRepository;
+        this.bookRepository = bookRepository;
+        this.bookFileRepository = bookFileRepository;
+        this.bookFileTypeRepository = bookFileTypeRepository;
+        this.config = config;
+    }
+
+    @DynamicPropertySource
+    static void storageProperties(DynamicPropertyRegistry registry) {
+        registry.add("app-config.download-path", downloadPath::toString);
+    }
+
+    @AfterEach
+    void deleteStoredFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(downloadPath)) {
+            paths.sorted(Comparator.reverseOrder()).filter(path -> !path.equals(downloadPath))
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void saveNewBookFileStoresIdenticalContentOnce() throws Exception {
+        Book book = bookRepository.findById(TEST_PAID_BOOK_ID).orElseThrow(IllegalStateException::new);
+        BookFileType pdf = createBookFileType("PDF");
+        BookFileType epub = createBookFileType("EPUB");
+        byte[] content = "identical book content".getBytes(StandardCharsets.UTF_8);
+
+        BookFile first = resourceStorageService.saveNewBookFile(
+                new MockMultipartFile("file", "book.pdf", "application/pdf", content), book, pdf);
+        BookFile second = resourceStorageService.saveNewBookFile(
+                new MockMultipartFile("file", "edition.pdf", "application/pdf", content), book, epub);
+
+        String checksum = resourceStorageService.getChecksum(Files.write(downloadPath.resolve("expected"), content));
+        assertEquals(checksum, first.getChecksum());
+        assertEquals(first.getPath(), second.getPath());
+        assertNotEquals(first.getHash(), second.getHash());
+        assertEquals("edition.pdf", second.getFileName());
+        assertEquals(2, bookFileRepository.countByPath(first.getPath()));
+        try (Stream<Path> files = Files.walk(resourceStorageService.getContentStorePath())) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+        assertArrayEquals(content, Files.readAllBytes(downloadPath.resolve(first.getPath())));
+    }
+
+    @Test
+    void getChecksumLimitsBandwidth() throws Exception {
+        Path path = Files.write(downloadPath.resolve("throttled"), new byte[THROTTLED_FILE_SIZE]);
+
+        long start = System.nanoTime();
+        String checksum = resourceStorageService.getChecksum(path, THROTTLED_FILE_SIZE * 4L);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(resourceStorageService.getChecksum(path), checksum);
+        assertTrue(elapsedMillis >= 200, "elapsed " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void isAvailableFileAndUpdateCountDownloadConcurrentDownloadsKeepQuota() throws Exception {
+        User user = userRepository.findById(TEST_USER_ID).orElseThrow(IllegalStateException::new);
+        BookFileDescriptor descriptor = new BookFileDescriptor(TEST_FILE_HASH, "book.pdf", null, null, null, null,
+                null, TEST_PAID_BOOK_ID);
+        String downloadUrl = resourceStorageService.getDownloadUrl(TEST_FILE_HASH, TEST_USER_ID);
+        String signature = downloadUrl.substring(downloadUrl.indexOf("signature=") + "signature=".length());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return resourceStorageService.isAvailableFileAndUpdateCountDownload(descriptor, TEST_USER_ID,
+                        signature, false);
+            }));
+        }
+        start.countDown();
+        int allowed = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(30, TimeUnit.SECONDS)) {
+                allowed++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(config.getMaxDownloadCount(), allowed);
+        assertEquals(config.getMaxDownloadCount(), fileDownloadRepository
+                .getByBookIdAndUserId(TEST_PAID_BOOK_ID, TEST_USER_ID)
+                .orElseThrow(IllegalStateException::new).getCount());
+        assertFalse(resourceStorageService.isAvailableFile(TEST_PAID_BOOK_ID, user));
+        assertTrue(resourceStorageService.isAvailableFileAndUpdateCountDownload(descriptor, TEST_USER_ID,
+                signature, true));
+    }
+
+    private BookFileType createBookFileType(String name) {
+        BookFileType bookFileType = new BookFileType();
+        bookFileType.setName(name);
+        return bookFileTypeRepository.save(bookFileType);
+    }
+
+    private static Path createDownloadPath() {
+        try {
+            return Files.createTempDirectory("book-files");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
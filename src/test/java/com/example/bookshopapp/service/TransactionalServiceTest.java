@@ -0,0 +1,88 @@
+package com.example.bookshopapp.service;
+
+import com.example.bookshopapp.api.dto.TransactionalDto;
+import com.example.bookshopapp.model.Book;
+import com.example.bookshopapp.model.User;
+import com.example.bookshopapp.model.enums.BookStatus;
+import com.example.bookshopapp.repositories.BalanceTransactionRepository;
+import com.example.bookshopapp.repositories.Book2UserRepository;
+import com.example.bookshopapp.repositories.BookRepository;
+import com.example.bookshopapp.repositories.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@TestPropertySource("/application-test.yaml")
+@Sql(value = {"/data.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = {"/delete-all.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class TransactionalServiceTest {
+
+    public static final int TEST_USER_ID = 2;
+    public static final int TEST_USER_BALANCE = 3221;
+    public static final int TEST_BOOK_CART_ID = 5;
+    private static final int THREADS = 16;
+
+    @MockBean
+    private AuthService authServiceMock;
+    @MockBean
+    private PaymentService paymentServiceMock;
+    private final TransactionalService transactionalService;
+    private final UserRepository userRepository;
+    private final BookRepository bookRepository;
+    private final Book2UserRepository book2UserRepository;
+    private final BalanceTransactionRepository balanceTransactionRepository;
+
+    @Autowired
+    TransactionalServiceTest(TransactionalService transactionalService, UserRepository userRepository,
+                             BookRepository bookRepository, Book2UserRepository book2UserRepository,
+                             BalanceTransactionRepository balanceTransactionRepository) {
+        this.transactionalService = transactionalService;
+        this.userRepository = userRepository;
+        this.bookRepository = bookRepository;
+        this.book2UserRepository = book2UserRepository;
+        this.balanceTransactionRepository = balanceTransactionRepository;
+    }
+
+    @Test
+    void handleCartPaidConcurrentCheckoutsDebitOnce() throws Exception {
+        User user = userRepository.findById(TEST_USER_ID).orElseThrow(IllegalStateException::new);
+        Book book = bookRepository.findById(TEST_BOOK_CART_ID).orElseThrow(IllegalStateException::new);
+        when(authServiceMock.getCurrentUser()).thenReturn(user);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return transactionalService.handleCartPaid().join();
+            }));
+        }
+        start.countDown();
+        for (Future<String> result : results) {
+            assertEquals("", result.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        int expectedBalance = TEST_USER_BALANCE - BookService.getDiscountPrice(book.getPrice(), book.getDiscount());
+        assertEquals(expectedBalance, userRepository.getBalanceById(TEST_USER_ID));
+        assertEquals(BookStatus.PAID.getStatus(), book2UserRepository
+                .getBook2UserByBookAndUserId(TEST_BOOK_CART_ID, TEST_USER_ID)
+                .orElseThrow(IllegalStateException::new).getBook2UserType().getCode());
+        List<TransactionalDto> transactions = balanceTransactionRepository
+                .findPageByUserId(TEST_USER_ID, true, null, null, THREADS);
+        assertEquals(1, transactions.size());
+        assertEquals(expectedBalance, transactions.get(0).getBalance());
+    }
+}
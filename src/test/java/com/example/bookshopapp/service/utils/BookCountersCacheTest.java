@@ -0,0 +1,105 @@
+package com.example.bookshopapp.service.utils;
+
+import com.example.bookshopapp.model.enums.BookStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCountersCacheTest {
+
+    public static final int TEST_USER_ID = 2;
+    public static final int OTHER_USER_ID = 3;
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Test
+    void putAfterEvictIsDiscarded() {
+        BookCountersCache cache = new BookCountersCache(16, TTL_NANOS);
+        long generation = cache.getGeneration(TEST_USER_ID);
+        long otherGeneration = cache.getGeneration(OTHER_USER_ID);
+        cache.evict(TEST_USER_ID);
+        cache.put(TEST_USER_ID, counters(1), generation, 0);
+        cache.put(OTHER_USER_ID, counters(2), otherGeneration, 0);
+
+        assertNull(cache.get(TEST_USER_ID, 0));
+        assertEquals(counters(2), cache.get(OTHER_USER_ID, 0));
+
+        cache.put(TEST_USER_ID, counters(3), cache.getGeneration(TEST_USER_ID), 0);
+        assertEquals(counters(3), cache.get(TEST_USER_ID, 0));
+    }
+
+    @Test
+    void concurrentEvictAndPutNeverKeepStaleCounters() throws Exception {
+        BookCountersCache cache = new BookCountersCache(16, TTL_NANOS);
+        AtomicInteger dataBaseCount = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> loaders = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            loaders.add(executor.submit(() -> {
+                while (running.get()) {
+                    if (cache.get(TEST_USER_ID) == null) {
+                        long generation = cache.getGeneration(TEST_USER_ID);
+                        cache.put(TEST_USER_ID, counters(dataBaseCount.get()), generation);
+                    }
+                }
+            }));
+        }
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 0; i < 100000; i++) {
+                dataBaseCount.incrementAndGet();
+                cache.evict(TEST_USER_ID);
+            }
+            running.set(false);
+        });
+        writer.get(30, TimeUnit.SECONDS);
+        for (Future<?> loader : loaders) {
+            loader.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Map<BookStatus, Integer> cached = cache.get(TEST_USER_ID);
+        if (cached != null) {
+            assertEquals(counters(dataBaseCount.get()), cached);
+        }
+    }
+
+    @Test
+    void sizeIsBoundedAndLeastRecentlyUsedUserIsEvicted() {
+        BookCountersCache cache = new BookCountersCache(3, TTL_NANOS);
+        for (int userId = 1; userId <= 3; userId++) {
+            cache.put(userId, counters(userId), cache.getGeneration(userId), 0);
+        }
+        cache.get(1, 0);
+        cache.put(4, counters(4), cache.getGeneration(4), 0);
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get(2, 0));
+        assertEquals(counters(1), cache.get(1, 0));
+        for (int userId = 5; userId <= 1000; userId++) {
+            cache.put(userId, counters(userId), cache.getGeneration(userId), 0);
+            assertTrue(cache.size() <= 3);
+        }
+        assertEquals(counters(1000), cache.get(1000, 0));
+    }
+
+    @Test
+    void countersExpireAfterWrite() {
+        BookCountersCache cache = new BookCountersCache(16, TTL_NANOS);
+        cache.put(TEST_USER_ID, counters(1), cache.getGeneration(TEST_USER_ID), 0);
+
+        assertEquals(counters(1), cache.get(TEST_USER_ID, TTL_NANOS - 1));
+        assertNull(cache.get(TEST_USER_ID, TTL_NANOS));
+    }
+
+    private static Map<BookStatus, Integer> counters(int cartCount) {
+        return Collections.singletonMap(BookStatus.CART, cartCount);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.bookshopapp.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookIdsCookieCodecTest {
+
+    public static final String SECRET = "apple";
+    public static final String LEGACY_CONTENTS = "book-hrf-593/book-abc-123";
+    private static final int MAX_IDS = 500;
+
+    @Test
+    void encodeDecode() {
+        BookIdsCookieCodec codec = new BookIdsCookieCodec(SECRET, MAX_IDS);
+        String value = codec.encode(new int[]{300, 25, 7, 25, 100000});
+
+        assertTrue(value.startsWith(BookIdsCookieCodec.VERSION_PREFIX));
+        assertArrayEquals(new int[]{7, 25, 300, 100000}, codec.decode(value));
+        assertEquals("", codec.encode(new int[0]));
+        assertArrayEquals(new int[0], codec.decode(""));
+    }
+
+    @Test
+    void decodeLegacyAndTamperedValues() {
+        BookIdsCookieCodec codec = new BookIdsCookieCodec(SECRET, MAX_IDS);
+        String value = codec.encode(new int[]{25});
+        String tampered = BookIdsCookieCodec.VERSION_PREFIX + "AhkB" + value.substring(value.lastIndexOf('.'));
+
+        assertNull(codec.decode(LEGACY_CONTENTS));
+        assertArrayEquals(new int[0], codec.decode(tampered));
+        assertArrayEquals(new int[0], new BookIdsCookieCodec("other", MAX_IDS).decode(value));
+    }
+}
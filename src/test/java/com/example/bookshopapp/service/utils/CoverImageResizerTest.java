@@ -0,0 +1,73 @@
+package com.example.bookshopapp.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CoverImageResizerTest {
+
+    @Test
+    void resizeKeepsAspectRatio() {
+        BufferedImage source = new BufferedImage(1000, 2000, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage resized = CoverImageResizer.resize(source, 240, 360);
+        assertEquals(180, resized.getWidth());
+        assertEquals(360, resized.getHeight());
+    }
+
+    @Test
+    void resizeDoesNotUpscale() {
+        BufferedImage source = new BufferedImage(100, 150, BufferedImage.TYPE_INT_RGB);
+        BufferedImage resized = CoverImageResizer.resize(source, 480, 720);
+        assertEquals(100, resized.getWidth());
+        assertEquals(150, resized.getHeight());
+    }
+
+    @Test
+    void writeJpeg() throws Exception {
+        BufferedImage source = new BufferedImage(300, 450, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        CoverImageResizer.writeJpeg(CoverImageResizer.resize(source, 80, 120), 0.85f, outputStream);
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertNotNull(result);
+        assertEquals(80, result.getWidth());
+        assertEquals(120, result.getHeight());
+    }
+
+    @Test
+    void readWithinLimit() throws Exception {
+        File file = writePng(200, 300);
+        try {
+            BufferedImage result = CoverImageResizer.read(file, 200 * 300);
+            assertNotNull(result);
+            assertEquals(200, result.getWidth());
+            assertEquals(300, result.getHeight());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void readRejectsImageOverLimit() throws Exception {
+        File file = writePng(200, 300);
+        try {
+            assertThrows(IOException.class, () -> CoverImageResizer.read(file, 200 * 300 - 1));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private File writePng(int width, int height) throws IOException {
+        File file = File.createTempFile("cover", ".png");
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file);
+        return file;
+    }
+}
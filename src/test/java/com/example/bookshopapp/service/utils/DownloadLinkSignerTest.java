@@ -0,0 +1,40 @@
+package com.example.bookshopapp.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadLinkSignerTest {
+
+    public static final String TEST_SECRET = "secret";
+    public static final String TEST_HASH = "6a2b8f4c-3e9d-4f1a-b7c5-0d8e2f6a4b1c";
+    public static final int TEST_USER_ID = 2;
+    public static final long TEST_NOW = 1_700_000_000L;
+    public static final long TEST_EXPIRES = TEST_NOW + 900;
+
+    @Test
+    void verifySignedLink() {
+        DownloadLinkSigner signer = new DownloadLinkSigner(TEST_SECRET);
+        String signature = signer.sign(TEST_HASH, TEST_USER_ID, TEST_EXPIRES);
+
+        assertTrue(signer.verify(TEST_HASH, TEST_USER_ID, TEST_EXPIRES, signature, TEST_NOW));
+        assertTrue(new DownloadLinkSigner(TEST_SECRET).verify(TEST_HASH, TEST_USER_ID, TEST_EXPIRES, signature,
+                TEST_NOW));
+        assertFalse(signature.contains("=") || signature.contains("+") || signature.contains("/"));
+    }
+
+    @Test
+    void rejectTamperedOrExpiredLink() {
+        DownloadLinkSigner signer = new DownloadLinkSigner(TEST_SECRET);
+        String signature = signer.sign(TEST_HASH, TEST_USER_ID, TEST_EXPIRES);
+
+        assertFalse(signer.verify(TEST_HASH, TEST_USER_ID + 1, TEST_EXPIRES, signature, TEST_NOW));
+        assertFalse(signer.verify("other", TEST_USER_ID, TEST_EXPIRES, signature, TEST_NOW));
+        assertFalse(signer.verify(TEST_HASH, TEST_USER_ID, TEST_EXPIRES + 1, signature, TEST_NOW));
+        assertFalse(signer.verify(TEST_HASH, TEST_USER_ID, TEST_EXPIRES, signature, TEST_EXPIRES + 1));
+        assertFalse(signer.verify(TEST_HASH, TEST_USER_ID, TEST_EXPIRES, null, TEST_NOW));
+        assertFalse(new DownloadLinkSigner("other").verify(TEST_HASH, TEST_USER_ID, TEST_EXPIRES, signature,
+                TEST_NOW));
+    }
+}
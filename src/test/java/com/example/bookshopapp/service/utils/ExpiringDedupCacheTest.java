@@ -0,0 +1,55 @@
+package com.example.bookshopapp.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringDedupCacheTest {
+
+    public static final String TEST_KEY = "125-92-7549:100.00";
+    public static final String TEST_URI = "https://yoomoney.ru/checkout/payments/v2/contract";
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Test
+    void getOrLoadConcurrentRequestsLoadOnce() throws Exception {
+        ExpiringDedupCache<String, String> cache = new ExpiringDedupCache<>(TTL_NANOS, 16);
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> providerResponse = new CompletableFuture<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<CompletableFuture<String>>> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            results.add(executor.submit(() -> cache.getOrLoad(TEST_KEY, () -> {
+                loads.incrementAndGet();
+                return providerResponse;
+            })));
+        }
+        providerResponse.complete(TEST_URI);
+        for (Future<CompletableFuture<String>> result : results) {
+            assertEquals(TEST_URI, result.get().get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1, loads.get());
+        assertEquals(31, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void getOrLoadExpiredAndFailedEntriesAreReloaded() throws Exception {
+        ExpiringDedupCache<String, String> cache = new ExpiringDedupCache<>(TTL_NANOS, 16);
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException());
+
+        assertTrue(cache.getOrLoad(TEST_KEY, () -> failed, 0).isCompletedExceptionally());
+        assertEquals(0, cache.size());
+        assertEquals(TEST_URI, cache.getOrLoad(TEST_KEY, () -> CompletableFuture.completedFuture(TEST_URI), 0).get());
+        assertEquals(TEST_URI, cache.getOrLoad(TEST_KEY, () -> CompletableFuture.completedFuture("other"), 1).get());
+        assertEquals("other", cache.getOrLoad(TEST_KEY,
+                () -> CompletableFuture.completedFuture("other"), TTL_NANOS).get());
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.bookshopapp.service.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRangeSenderTest {
+
+    public static final String TEST_FILE_NAME = "book.pdf";
+    public static final String TEST_ETAG = "\"0123456789abcdef\"";
+    private static final long LARGE_FILE_SIZE = 1024L * 1024 * 1024;
+    private static final String SMALL_HEAP = "-Xmx64m";
+
+    @Test
+    void sendRange(@TempDir Path dir) throws Exception {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Path path = Files.write(dir.resolve(TEST_FILE_NAME), data);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books/download/hash");
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileRangeSender.send(path, MediaType.APPLICATION_PDF, null, TEST_FILE_NAME, request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 200), response.getContentAsByteArray());
+        assertTrue(FileRangeSender.isRangeNotFromStart(request));
+
+        request.addHeader(HttpHeaders.IF_RANGE, Files.getLastModifiedTime(path).toMillis() - 60000);
+        response = new MockHttpServletResponse();
+        FileRangeSender.send(path, MediaType.APPLICATION_PDF, null, TEST_FILE_NAME, request, response);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(data, response.getContentAsByteArray());
+
+        request = new MockHttpServletRequest("GET", "/books/download/hash");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2000-");
+        response = new MockHttpServletResponse();
+        FileRangeSender.send(path, MediaType.APPLICATION_PDF, null, TEST_FILE_NAME, request, response);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void conditionalRequests(@TempDir Path dir) throws Exception {
+        Path path = Files.write(dir.resolve(TEST_FILE_NAME), new byte[1000]);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books/download/hash");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", " + TEST_ETAG);
+        assertTrue(FileRangeSender.isNotModified(request, TEST_ETAG, lastModified));
+        assertFalse(FileRangeSender.isNotModified(request, null, lastModified));
+
+        request = new MockHttpServletRequest("GET", "/books/download/hash");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        assertTrue(FileRangeSender.isNotModified(request, TEST_ETAG, lastModified));
+        assertFalse(FileRangeSender.isNotModified(request, TEST_ETAG, lastModified + 60000));
+
+        request = new MockHttpServletRequest("GET", "/books/download/hash");
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+        request.addHeader(HttpHeaders.IF_RANGE, TEST_ETAG);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileRangeSender.send(path, MediaType.APPLICATION_PDF, TEST_ETAG, TEST_FILE_NAME, request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals(TEST_ETAG, response.getHeader(HttpHeaders.ETAG));
+
+        response = new MockHttpServletResponse();
+        FileRangeSender.send(path, MediaType.APPLICATION_PDF, "\"other\"", TEST_FILE_NAME, request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(1000, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void sendLargeFileWithSmallHeap(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve(TEST_FILE_NAME);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(LARGE_FILE_SIZE);
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, SMALL_HEAP, "-cp", System.getProperty("java.class.path"),
+                FileRangeSenderTest.class.getName(), path.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(dir.resolve("output.txt").toFile())
+                .start();
+
+        assertTrue(process.waitFor(5, TimeUnit.MINUTES));
+        assertEquals(0, process.exitValue(), new String(Files.readAllBytes(dir.resolve("output.txt"))));
+    }
+
+    /**
+     * Скачивание файла в отдельной JVM с маленькой кучей, содержимое ответа отбрасывается
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File(args[0]);
+        long[] written = {0};
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        written[0]++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        written[0] += len;
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                    }
+                };
+            }
+        };
+        FileRangeSender.send(file.toPath(), MediaType.APPLICATION_PDF, null, TEST_FILE_NAME,
+                new MockHttpServletRequest("GET", "/books/download/hash"), response);
+        if (written[0] != file.length() || response.getContentLengthLong() != file.length()) {
+            System.out.println("written " + written[0] + " of " + file.length());
+            System.exit(1);
+        }
+    }
+}
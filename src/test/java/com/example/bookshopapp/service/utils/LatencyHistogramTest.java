@@ -0,0 +1,69 @@
+package com.example.bookshopapp.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    private static final long MICROS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    @Test
+    void percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * MICROS);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500 * MICROS / 1000, snapshot.getMeanNanos());
+        assertEquals(1000 * MICROS, snapshot.getMaxNanos());
+        assertWithinPrecision(500 * MICROS, snapshot.getPercentileNanos(50));
+        assertWithinPrecision(990 * MICROS, snapshot.getPercentileNanos(99));
+        assertEquals(1000 * MICROS, snapshot.getPercentileNanos(100));
+    }
+
+    @Test
+    void bucketBoundsCoverAllValues() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 1000, 123456789, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.getBucketIndex(value);
+            assertTrue(value <= LatencyHistogram.getBucketUpperBound(index), "value " + value);
+            assertTrue(index == 0 || value > LatencyHistogram.getBucketUpperBound(index - 1), "value " + value);
+        }
+        assertEquals(0, new LatencyHistogram().getSnapshot().getPercentileNanos(99));
+    }
+
+    @Test
+    void recordConcurrentlyKeepsAllValues() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                for (long value = 1; value <= 10000; value++) {
+                    histogram.record(value);
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(80000, histogram.getSnapshot().getCount());
+        assertEquals(10000, histogram.getSnapshot().getMaxNanos());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 8, "expected " + expected + " actual " + actual);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bookshopapp.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+
+    public static final String TEST_KEY = "test@mail.ru";
+    public static final String TEST_OTHER_KEY = "79991112233";
+    private static final long REFILL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    @Test
+    void tryAcquireBurstIsRejected() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, REFILL_NANOS, 4, 16);
+        long now = 0;
+
+        assertTrue(limiter.tryAcquire(TEST_KEY, now));
+        assertTrue(limiter.tryAcquire(TEST_KEY, now));
+        assertTrue(limiter.tryAcquire(TEST_KEY, now));
+        assertFalse(limiter.tryAcquire(TEST_KEY, now));
+        assertTrue(limiter.tryAcquire(TEST_OTHER_KEY, now));
+        assertEquals(60, limiter.secondsToNextToken(TEST_KEY, now));
+    }
+
+    @Test
+    void tryAcquireRefill() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, REFILL_NANOS, 4, 16);
+        long now = 0;
+
+        assertTrue(limiter.tryAcquire(TEST_KEY, now));
+        assertFalse(limiter.tryAcquire(TEST_KEY, now + REFILL_NANOS - 1));
+        assertTrue(limiter.tryAcquire(TEST_KEY, now + REFILL_NANOS));
+        assertFalse(limiter.tryAcquire(TEST_KEY, now + REFILL_NANOS));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.bookshopapp.utils;
+
+import com.example.bookshopapp.api.dto.payment.Amount;
+import com.example.bookshopapp.api.dto.payment.Confirmation;
+import com.example.bookshopapp.api.dto.payment.PaymentMethod;
+import com.example.bookshopapp.api.request.payment.PaymentNotificationRequest;
+import com.example.bookshopapp.api.request.payment.PaymentRequest;
+import com.example.bookshopapp.api.response.payment.PaymentResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Локальная замена платежной системы для тестов без доступа к сети.
+ * Создает платежи в статусе pending по запросу POST /payments, отвечает на запросы статуса платежа
+ * GET /payments/{id} и формирует уведомления платежной системы, которые тест отправляет (повторяет) в приложение.
+ * Для измерения пропускной способности заглушка может отвечать на запросы статуса с задержкой, обрабатывая
+ * запросы параллельно, как настоящая платежная система.
+ */
+public class PaymentProviderStub {
+    public static final String PAYMENTS_PATH = "/payments";
+    public static final String CONFIRMATION_URI = "http://localhost/confirmation/";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, PaymentResponse> payments = new ConcurrentHashMap<>();
+
+    private PaymentProviderStub(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    public static PaymentProviderStub start() {
+        return start(0);
+    }
+
+    /**
+     * @param responseDelayMillis - задержка ответа на запрос статуса платежа в миллисекундах
+     */
+    public static PaymentProviderStub start(long responseDelayMillis) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            ExecutorService executor = Executors.newCachedThreadPool();
+            server.setExecutor(executor);
+            PaymentProviderStub stub = new PaymentProviderStub(server, executor);
+            server.createContext(PAYMENTS_PATH, exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                PaymentResponse payment;
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    PaymentRequest request = stub.mapper.readValue(exchange.getRequestBody(), PaymentRequest.class);
+                    payment = stub.createPayment(request.getAmount().getValue());
+                } else {
+                    payment = stub.payments.get(path.substring(path.lastIndexOf('/') + 1));
+                    sleep(responseDelayMillis);
+                }
+                byte[] body = payment == null ? new byte[0] : stub.mapper.writeValueAsBytes(payment);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(payment == null ? 404 : 200, payment == null ? -1 : body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            });
+            server.start();
+            return stub;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public String getPaymentUri() {
+        return "http://localhost:" + server.getAddress().getPort() + PAYMENTS_PATH;
+    }
+
+    public void setPayment(String id, String status, String sum) {
+        PaymentResponse payment = new PaymentResponse();
+        payment.setId(id);
+        payment.setStatus(status);
+        payment.setPaid("succeeded".equals(status));
+        payment.setAmount(new Amount(sum, "RUB"));
+        payment.setPaymentMethod(new PaymentMethod("bank_card", id, false));
+        payments.put(id, payment);
+    }
+
+    private PaymentResponse createPayment(String sum) {
+        String id = UUID.randomUUID().toString();
+        setPayment(id, "pending", sum);
+        PaymentResponse payment = payments.get(id);
+        payment.setConfirmation(new Confirmation("redirect", null, CONFIRMATION_URI + id));
+        return payment;
+    }
+
+    public int getPaymentsCount() {
+        return payments.size();
+    }
+
+    public PaymentNotificationRequest getNotification(String id) {
+        PaymentResponse payment = payments.get(id);
+        return new PaymentNotificationRequest("notification", "payment." + payment.getStatus(), payment);
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
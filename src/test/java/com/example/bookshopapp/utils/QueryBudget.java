@@ -0,0 +1,19 @@
+package com.example.bookshopapp.utils;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Максимальное количество SQL запросов Hibernate за выполнение тестового метода.
+ * Запросы в методах BeforeEach/AfterEach и sql скриптах аннотации Sql не учитываются.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@ExtendWith(QueryBudgetExtension.class)
+public @interface QueryBudget {
+    long value();
+}
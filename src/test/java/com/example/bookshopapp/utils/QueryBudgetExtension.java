@@ -0,0 +1,31 @@
+package com.example.bookshopapp.utils;
+
+import com.example.bookshopapp.service.utils.SqlQueryCounter;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка бюджета SQL запросов тестового метода, отмеченного аннотацией QueryBudget.
+ * Запросы считаются в потоке теста, поэтому запросы MockMvc учитываются, а запросы других потоков - нет.
+ */
+public class QueryBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(
+            QueryBudgetExtension.class);
+    private static final String START_COUNT = "startCount";
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(START_COUNT, SqlQueryCounter.getCount());
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        QueryBudget budget = context.getRequiredTestMethod().getAnnotation(QueryBudget.class);
+        long count = SqlQueryCounter.getCount() - context.getStore(NAMESPACE).remove(START_COUNT, Long.class);
+        assertTrue(count <= budget.value(), context.getDisplayName() + " executed " + count +
+                " SQL queries, budget " + budget.value());
+    }
+}
@@ -56,12 +56,11 @@ values (10, 1, null, null, 0, 'testLoginConfirm@mail.ru', 'EMAIL', 3);
 insert into user_contact (id, approved, code, code_time, code_trials, contact, type, user_id)
 values (11, 1, null, null, 0, '79995556644', 'PHONE', 3);
 
-insert into book2user_type (id, code, name) values (1, 'KEPT', 'Отложена');
-insert into book2user_type (id, code, name) values (2, 'CART', 'В корзине');
-insert into book2user_type (id, code, name) values (3, 'PAID', 'Куплена');
-insert into book2user_type (id, code, name) values (4, 'ARCHIVED', 'В архиве');
-
-insert into book2user (book_id, user_id, type_id, time) values (1, 2, 1, '26/06/2022');
-insert into book2user (book_id, user_id, type_id, time) values (5, 2, 2, '29/08/2022');
-insert into book2user (book_id, user_id, type_id, time) values (10, 2, 3, '02/11/2021');
-insert into book2user (book_id, user_id, type_id, time) values (15, 2, 4, '14/08/2022');
\ No newline at end of file
+insert into book2user (book_id, user_id, type_id, time)
+select 1, 2, id, '26/06/2022' from book2user_type where code = 'KEPT';
+insert into book2user (book_id, user_id, type_id, time)
+select 5, 2, id, '29/08/2022' from book2user_type where code = 'CART';
+insert into book2user (book_id, user_id, type_id, time)
+select 10, 2, id, '02/11/2021' from book2user_type where code = 'PAID';
+insert into book2user (book_id, user_id, type_id, time)
+select 15, 2, id, '14/08/2022' from book2user_type where code = 'ARCHIVED';
\ No newline at end of file
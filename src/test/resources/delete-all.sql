@@ -1,6 +1,10 @@
+DELETE FROM balance_transaction;
+DELETE FROM yoo_cash_operation;
 DELETE FROM user_contact;
 DELETE FROM book2user;
-DELETE FROM book2user_type;
+DELETE FROM file_download;
+DELETE FROM book_file;
+DELETE FROM book_file_type;
 DELETE FROM book;
 DELETE FROM users;
 DELETE FROM jwt_black_list;
\ No newline at end of file